@@ -0,0 +1,321 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * BatchValidator checks many SimpCalc files in one JVM.  Every file is
+ * scanned by its own ScannerModule into a PackedTokenBuffer and parsed by
+ * its own NewParserModule, one task per file.  The tasks run on virtual
+ * threads when the JVM has them (Java 21 and later) and on a pool with one
+ * thread per processor otherwise.  A semaphore bounds the number of files
+ * being read at the same time; parsing needs no file and is not bounded.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class BatchValidator
+{
+    private int maxOpenFiles;
+
+    /**
+     * Result of validating one file
+     */
+    public static class Result
+    {
+        private final File file;
+        private final List<Diagnostic> diagnostics;
+        private final String failure;
+        private final long scanNanos;
+        private final long parseNanos;
+
+        Result(File file, List<Diagnostic> diagnostics, String failure, long scanNanos, long parseNanos)
+        {
+            this.file = file;
+            this.diagnostics = diagnostics;
+            this.failure = failure;
+            this.scanNanos = scanNanos;
+            this.parseNanos = parseNanos;
+        }
+
+        /**
+         * Accessor method for the file
+         * @return validated file
+         */
+        public File getFile()
+        {
+            return file;
+        }
+
+        /**
+         * Checks if the file is a valid SimpCalc program
+         * @return true if the file was read and parsed without errors
+         */
+        public boolean isValid()
+        {
+            return failure == null && diagnostics.isEmpty();
+        }
+
+        /**
+         * Accessor method for the parse errors
+         * @return parse errors of the file, empty if it could not be read
+         */
+        public List<Diagnostic> getDiagnostics()
+        {
+            return diagnostics;
+        }
+
+        /**
+         * Accessor method for the reason the file could not be validated
+         * @return description of the failure, or null if the file was read and parsed
+         */
+        public String getFailure()
+        {
+            return failure;
+        }
+
+        /**
+         * Accessor method for the time spent reading and scanning the file
+         * @return scan time in nanoseconds
+         */
+        public long getScanNanos()
+        {
+            return scanNanos;
+        }
+
+        /**
+         * Accessor method for the time spent parsing the file
+         * @return parse time in nanoseconds
+         */
+        public long getParseNanos()
+        {
+            return parseNanos;
+        }
+    }
+
+    /**
+     * Constructor for BatchValidator objects
+     *
+     * @param maxOpenFiles maximum number of files read at the same time
+     */
+    public BatchValidator(int maxOpenFiles)
+    {
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    /**
+     * Validates the given files concurrently
+     *
+     * @param files files to validate
+     * @return one result per file, in the order of files
+     */
+    public List<Result> validate(List<File> files)
+    {
+        final Semaphore openFiles = new Semaphore(maxOpenFiles);
+        List<Future<Result>> futures = new ArrayList<Future<Result>>(files.size());
+        ExecutorService executor = newExecutor();
+        try
+        {
+            for (final File file : files)
+            {
+                futures.add(executor.submit(new Callable<Result>()
+                {
+                    public Result call() throws InterruptedException
+                    {
+                        return validate(file, openFiles);
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<Result>(files.size());
+            for (Future<Result> future : futures)
+            {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch validation interrupted", e);
+        } catch (ExecutionException e)
+        {
+            throw new IllegalStateException("Batch validation failed", e.getCause());
+        } finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result validate(File file, Semaphore openFiles) throws InterruptedException
+    {
+        long start = System.nanoTime();
+        PackedTokenBuffer tokens = new PackedTokenBuffer();
+        openFiles.acquire();
+        try
+        {
+            MappedLineSource input = new MappedLineSource(file);
+            try
+            {
+                ScannerModule sm = new ScannerModule(input);
+                sm.setSourceName(file.getPath());
+                sm.getTokens(tokens);
+            } finally
+            {
+                input.close();
+            }
+        } catch (IOException | UncheckedIOException e)
+        {
+            return new Result(file, new ArrayList<Diagnostic>(), e.toString(), System.nanoTime() - start, 0);
+        } finally
+        {
+            openFiles.release();
+        }
+        long scanned = System.nanoTime();
+        NewParserModule pm = new NewParserModule(tokens);
+        pm.setSourceName(file.getPath());
+        pm.parse();
+        return new Result(file, pm.getDiagnostics(), null, scanned - start, System.nanoTime() - scanned);
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task if the JVM
+     * supports them, or a pool of one platform thread per processor
+     */
+    private static ExecutorService newExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e)
+        {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Collects the files named by a command line argument: a directory stands
+     * for all regular files below it, @name for the paths listed one per line
+     * in the file name, anything else for itself
+     *
+     * @param arg   command line argument
+     * @param files list the files are added to
+     */
+    public static void addFiles(String arg, List<File> files) throws IOException
+    {
+        if (arg.startsWith("@"))
+        {
+            for (String line : Files.readAllLines(new File(arg.substring(1)).toPath()))
+            {
+                if (line.trim().length() > 0)
+                {
+                    files.add(new File(line.trim()));
+                }
+            }
+            return;
+        }
+        File file = new File(arg);
+        if (file.isDirectory())
+        {
+            File[] children = file.listFiles();
+            if (children == null)
+            {
+                throw new IOException("Cannot list " + file);
+            }
+            Arrays.sort(children);
+            for (File child : children)
+            {
+                addFiles(child.getPath(), files);
+            }
+        }
+        else
+        {
+            files.add(file);
+        }
+    }
+
+    /**
+     * Driver method that validates the files named on the command line and
+     * prints the errors of the invalid ones and a summary
+     *
+     * @param args directories, files or @lists of files, optionally preceded by -io n to
+     *             set the number of files read at the same time (default 64), -v to
+     *             also print a line with the timings of every file and -metrics to print
+     *             the ValidationMetrics counters at the end
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int maxOpenFiles = 64;
+        boolean verbose = false;
+        boolean metrics = false;
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-io") && i + 1 < args.length)
+            {
+                maxOpenFiles = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-v"))
+            {
+                verbose = true;
+            }
+            else if (args[i].equals("-metrics"))
+            {
+                metrics = true;
+            }
+            else
+            {
+                addFiles(args[i], files);
+            }
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = new BatchValidator(maxOpenFiles).validate(files);
+        long elapsed = System.nanoTime() - start;
+
+        int valid = 0;
+        int unreadable = 0;
+        long scanNanos = 0;
+        long parseNanos = 0;
+        for (Result result : results)
+        {
+            scanNanos += result.getScanNanos();
+            parseNanos += result.getParseNanos();
+            if (verbose)
+            {
+                System.out.printf("%s %s  scan %.3f ms  parse %.3f ms%n", result.isValid() ? "PASS" : "FAIL",
+                                  result.getFile(), result.getScanNanos() / 1e6, result.getParseNanos() / 1e6);
+            }
+            if (result.isValid())
+            {
+                valid++;
+            }
+            else if (result.getFailure() != null)
+            {
+                unreadable++;
+                System.out.println(result.getFile() + ": " + result.getFailure());
+            }
+            else
+            {
+                for (Diagnostic diagnostic : result.getDiagnostics())
+                {
+                    System.out.println(result.getFile() + ": " + diagnostic);
+                }
+            }
+        }
+        System.out.printf("%d files: %d valid, %d invalid, %d unreadable in %d ms (scan %d ms, parse %d ms total)%n",
+                          results.size(), valid, results.size() - valid - unreadable, unreadable,
+                          elapsed / 1000000, scanNanos / 1000000, parseNanos / 1000000);
+        if (metrics)
+        {
+            System.out.print(ValidationMetrics.report());
+        }
+    }
+}
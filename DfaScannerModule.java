@@ -0,0 +1,384 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DfaScannerModule is a table-driven alternative to the hand-written scanning
+ * methods of ScannerModule.  Every character is mapped to a character class
+ * through a lookup table, and a single transition table (state x class)
+ * gives either the next state or the token to accept, so each token is
+ * scanned by one tight loop.  The operator, punctuation and keyword states
+ * are generated from the lexemes defined in the Token class; numbers,
+ * strings and identifiers follow the rules of ScannerModule.
+ *
+ * Line handling, skipping of blanks and comments, getToken() and
+ * getLineNumber() are inherited, so this class is a drop-in replacement producing exactly
+ * the same tokens as ScannerModule.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class DfaScannerModule extends ScannerModule
+{
+    // fixed character classes; more are added for the characters used in Token lexemes
+    private static final int EOL      = 0;   // virtual class for "past the end of the line"
+    private static final int OTHER    = 1;
+    private static final int LETTER   = 2;
+    private static final int UNIDIGIT = 3;   // non-ASCII digits: identifier parts only
+    private static final int ZERO     = 4;
+    private static final int NONZERO  = 5;
+    private static final int DOT      = 6;
+    private static final int QUOTE    = 7;
+    private static final int BLANK    = 8;
+    private static final int LOWER_E  = 9;
+
+    // fixed states; operator and keyword states are numbered after these
+    private static final int START     = 0;
+    private static final int IDENT     = 1;
+    private static final int ERRWORD   = 2;   // run of identifier parts after an invalid start
+    private static final int ZERO_INT  = 3;   // "0"
+    private static final int ZERO_DIGITS = 4; // "0" followed by digits: no exponent allowed
+    private static final int ZERO_FRAC = 5;
+    private static final int INT       = 6;
+    private static final int FRAC      = 7;
+    private static final int PERIOD    = 8;   // "." not yet known to start a number
+    private static final int EXP_START = 9;
+    private static final int EXP_SIGN  = 10;
+    private static final int EXP_DIGITS= 11;
+    private static final int STRING    = 12;
+    private static final int FIXED_STATES = 13;
+
+    private static final int MAX_CLASSES = 128;   // classes are stored in a byte
+
+    private static final byte[] charClass = new byte[65536];
+    private static int classCount;
+    private static boolean[] identStart = new boolean[MAX_CLASSES];
+    private static boolean[] identPart = new boolean[MAX_CLASSES];
+    private static boolean[] decimalDigit = new boolean[MAX_CLASSES];
+    private static boolean[] exponent = new boolean[MAX_CLASSES];
+    private static boolean[] sign = new boolean[MAX_CLASSES];
+    private static char[] classChar = new char[MAX_CLASSES];   // the only character of a single-character class
+
+    private static int[] transitions;   // transitions[state * classCount + class]
+    private static int stateCount;
+
+    static
+    {
+        buildTable();
+    }
+
+    public DfaScannerModule(String fileName)
+    {
+        super(fileName);
+    }
+
+    /**
+     * Creates a table-driven scanner over the given file
+     *
+     * @param fileName name of text file
+     * @param mapped true to read the file through a MappedLineSource
+     */
+    public DfaScannerModule(String fileName, boolean mapped)
+    {
+        super(fileName, mapped);
+    }
+
+    /**
+     * Creates a table-driven scanner that reads its lines from the given source
+     *
+     * @param input source of the lines to be scanned
+     */
+    public DfaScannerModule(LineSource input)
+    {
+        super(input);
+    }
+
+    protected int TokenType()
+    {
+        if (isFileEnd())
+        {
+            return Token.EndOfFile;
+        }
+        char[] line = currentLine;
+        int base = lineStart;
+        int length = lineLength;
+        int pos = index;
+        int state = START;
+        int action;
+        while (true)
+        {
+            int cls = pos < length ? charClass[line[base + pos]] : EOL;
+            action = transitions[state * classCount + cls];
+            if (action < 0)
+            {
+                break;
+            }
+            state = action;
+            pos++;
+        }
+        int code = -1 - action;
+        lexemeBegin = index;
+        lexemeEnd = pos + (code & 1);
+        index = lexemeEnd;
+        return code >> 1;
+    }
+
+    // action that ends the token; consume says whether the lookahead character is part of it
+    private static int accept(int id, boolean consume)
+    {
+        return -1 - ((id << 1) | (consume ? 1 : 0));
+    }
+
+    private static int newClass(boolean start, boolean part, boolean digit)
+    {
+        int cls = classCount++;
+        identStart[cls] = start;
+        identPart[cls] = part;
+        decimalDigit[cls] = digit;
+        return cls;
+    }
+
+    // gives ch a class of its own, keeping the properties of its current class
+    private static void isolate(char ch)
+    {
+        int old = charClass[ch];
+        if (old == OTHER || old == LETTER)
+        {
+            int cls = newClass(identStart[old], identPart[old], false);
+            charClass[ch] = (byte) cls;
+            classChar[cls] = ch;
+        }
+    }
+
+    private static void buildTable()
+    {
+        newClass(false, false, false);  // EOL
+        newClass(false, false, false);  // OTHER
+        newClass(true, true, false);    // LETTER
+        newClass(false, true, false);   // UNIDIGIT
+        newClass(false, true, true);    // ZERO
+        newClass(false, true, true);    // NONZERO
+        newClass(false, false, false);  // DOT
+        newClass(false, false, false);  // QUOTE
+        newClass(false, false, false);  // BLANK
+        newClass(true, true, false);    // LOWER_E
+        exponent[LOWER_E] = true;
+        for (int c = 0; c < 65536; c++)
+        {
+            char ch = (char) c;
+            if (ch == '_' || Character.isLetter(ch))
+            {
+                charClass[c] = LETTER;
+            }
+            else if (Character.isDigit(ch))
+            {
+                charClass[c] = UNIDIGIT;
+            }
+            else
+            {
+                charClass[c] = OTHER;
+            }
+        }
+        charClass['0'] = ZERO;
+        for (char ch = '1'; ch <= '9'; ch++)
+        {
+            charClass[ch] = NONZERO;
+        }
+        charClass['.'] = DOT;
+        charClass['"'] = QUOTE;
+        charClass[' '] = BLANK;
+        charClass['\t'] = BLANK;
+        charClass['e'] = LOWER_E;
+
+        // split the token definitions into operators and keywords
+        Map<String, Integer> operators = new HashMap<String, Integer>();
+        Map<String, Integer> keywords = new HashMap<String, Integer>();
+        for (int id = 0; id < Token.tokenNames.length; id++)
+        {
+            Token fixed = Token.fixed(id);
+            if (fixed == null || fixed.getLexeme().length() == 0)
+            {
+                continue;
+            }
+            String lexeme = fixed.getLexeme();
+            if (Character.isLetter(lexeme.charAt(0)))
+            {
+                keywords.put(lexeme, id);
+            }
+            else
+            {
+                operators.put(lexeme, id);
+            }
+        }
+        for (String lexeme : operators.keySet())
+        {
+            for (char ch : lexeme.toCharArray())
+            {
+                isolate(ch);
+            }
+        }
+        for (String lexeme : keywords.keySet())
+        {
+            for (char ch : lexeme.toCharArray())
+            {
+                isolate(ch);
+            }
+        }
+        exponent[charClass['E']] = true;
+        sign[charClass['+']] = true;
+        sign[charClass['-']] = true;
+
+        // number the prefix states: keyword prefixes first, then operator prefixes
+        Map<String, Integer> keywordStates = new HashMap<String, Integer>();
+        Map<String, Integer> operatorStates = new HashMap<String, Integer>();
+        stateCount = FIXED_STATES;
+        for (String lexeme : keywords.keySet())
+        {
+            for (int n = 1; n <= lexeme.length(); n++)
+            {
+                String prefix = lexeme.substring(0, n);
+                if (!keywordStates.containsKey(prefix))
+                {
+                    keywordStates.put(prefix, stateCount++);
+                }
+            }
+        }
+        for (String lexeme : operators.keySet())
+        {
+            for (int n = 1; n <= lexeme.length(); n++)
+            {
+                String prefix = lexeme.substring(0, n);
+                if (!operatorStates.containsKey(prefix) && hasExtension(operators, prefix))
+                {
+                    operatorStates.put(prefix, stateCount++);
+                }
+            }
+        }
+
+        transitions = new int[stateCount * classCount];
+        for (int cls = 0; cls < classCount; cls++)
+        {
+            boolean digit = decimalDigit[cls];
+            boolean part = identPart[cls];
+            int number = accept(Token.Number, false);
+            set(IDENT, cls, part ? IDENT : accept(Token.Identifier, false));
+            set(ERRWORD, cls, part ? ERRWORD : accept(Token.Error, true));
+            set(ZERO_INT, cls, exponent[cls] ? EXP_START : cls == DOT ? FRAC : digit ? ZERO_DIGITS : number);
+            set(ZERO_DIGITS, cls, digit ? ZERO_DIGITS : cls == DOT ? ZERO_FRAC : number);
+            set(ZERO_FRAC, cls, digit ? ZERO_FRAC : number);
+            set(INT, cls, digit ? INT : cls == DOT ? FRAC : exponent[cls] ? EXP_START : number);
+            set(FRAC, cls, digit ? FRAC : exponent[cls] ? EXP_START : number);
+            set(PERIOD, cls, digit ? FRAC : accept(Token.Error, true));
+            set(EXP_START, cls, sign[cls] ? EXP_SIGN : digit ? EXP_DIGITS : accept(Token.Error, true));
+            set(EXP_SIGN, cls, digit ? EXP_DIGITS : accept(Token.Error, true));
+            set(EXP_DIGITS, cls, digit ? EXP_DIGITS : number);
+            set(STRING, cls, cls == QUOTE ? accept(Token.String, true)
+                           : cls == EOL ? accept(Token.Error, true) : STRING);
+
+            // first character of a token
+            int first;
+            String ch = String.valueOf(classChar[cls]);
+            if (cls == ZERO)
+            {
+                first = ZERO_INT;
+            }
+            else if (cls == NONZERO)
+            {
+                first = INT;
+            }
+            else if (cls == DOT)
+            {
+                first = PERIOD;
+            }
+            else if (cls == QUOTE)
+            {
+                first = STRING;
+            }
+            else if (cls == BLANK)
+            {
+                first = START;   // blanks are skipped by skipTrivia() before the table is entered
+            }
+            else if (cls == EOL)
+            {
+                first = accept(Token.Error, true);
+            }
+            else if (classChar[cls] != 0 && keywordStates.containsKey(ch))
+            {
+                first = keywordStates.get(ch);
+            }
+            else if (classChar[cls] != 0 && (operators.containsKey(ch) || operatorStates.containsKey(ch)))
+            {
+                first = operatorStep(operators, operatorStates, ch);
+            }
+            else
+            {
+                first = identStart[cls] ? IDENT : ERRWORD;
+            }
+            set(START, cls, first);
+
+            for (Map.Entry<String, Integer> entry : keywordStates.entrySet())
+            {
+                String prefix = entry.getKey();
+                int next;
+                if (!part)
+                {
+                    Integer keyword = keywords.get(prefix);
+                    next = accept(keyword != null ? keyword : Token.Identifier, false);
+                }
+                else if (classChar[cls] != 0 && keywordStates.containsKey(prefix + ch))
+                {
+                    next = keywordStates.get(prefix + ch);
+                }
+                else
+                {
+                    next = IDENT;
+                }
+                set(entry.getValue(), cls, next);
+            }
+
+            for (Map.Entry<String, Integer> entry : operatorStates.entrySet())
+            {
+                String prefix = entry.getKey();
+                int next;
+                if (classChar[cls] != 0 && (operators.containsKey(prefix + ch) || operatorStates.containsKey(prefix + ch)))
+                {
+                    next = operatorStep(operators, operatorStates, prefix + ch);
+                }
+                else
+                {
+                    // a prefix that is not a token itself (such as "!") is an error
+                    Integer operator = operators.get(prefix);
+                    next = operator != null ? accept(operator, false) : accept(Token.Error, true);
+                }
+                set(entry.getValue(), cls, next);
+            }
+        }
+    }
+
+    // transition into an operator prefix: a state if it can be extended, else accept it right away
+    private static int operatorStep(Map<String, Integer> operators, Map<String, Integer> operatorStates, String prefix)
+    {
+        Integer state = operatorStates.get(prefix);
+        if (state != null)
+        {
+            return state;
+        }
+        return accept(operators.get(prefix), true);
+    }
+
+    private static boolean hasExtension(Map<String, Integer> lexemes, String prefix)
+    {
+        for (String lexeme : lexemes.keySet())
+        {
+            if (lexeme.length() > prefix.length() && lexeme.startsWith(prefix))
+            {
+                return true;
+            }
+        }
+        return !lexemes.containsKey(prefix);
+    }
+
+    private static void set(int state, int cls, int action)
+    {
+        transitions[state * classCount + cls] = action;
+    }
+}
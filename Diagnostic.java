@@ -0,0 +1,51 @@
+/**
+ * Diagnostic records one parse error found by ParserModule or NewParserModule.
+ * The parsers recover from errors and go on, so a parse can report many.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class Diagnostic
+{
+    private final int line;
+    private final String message;
+
+    /**
+     * Constructor for Diagnostic objects
+     *
+     * @param line    line number of the token at which the error was found
+     * @param message description of the error
+     */
+    public Diagnostic(int line, String message)
+    {
+        this.line = line;
+        this.message = message;
+    }
+
+    /**
+     * Accessor method for the line number
+     * @return line number of the token at which the error was found
+     */
+    public int getLine()
+    {
+        return line;
+    }
+
+    /**
+     * Accessor method for the error message
+     * @return description of the error
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Formats the diagnostic the way the parsers print it
+     * @return e.g. "Parse Error: Semicolon   expected. (line #3)"
+     */
+    public String toString()
+    {
+        return "Parse Error: " + message + " (line #" + line + ")";
+    }
+}
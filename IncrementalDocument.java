@@ -0,0 +1,484 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * IncrementalDocument keeps a SimpCalc program that is being edited together
+ * with its tokens and parse errors, and updates them after each edit by
+ * redoing only the work the edit can affect.
+ *
+ * No token spans a line and the scanner starts every line afresh, so the
+ * tokens are kept per line and only the replaced lines are scanned again.
+ * The program is parsed as a sequence of units: top-level statements (an IF
+ * statement with its whole body is one unit) and runs of tokens skipped by
+ * error recovery.  At the start of a unit the parser has no state besides
+ * its position, and a unit's parse depends only on its own tokens and the
+ * token after it.  After an edit, parsing restarts at the first unit that
+ * touches the edited lines and stops as soon as it reaches the start of an
+ * old unit behind the edit; the units from there on are kept, their line
+ * numbers shifted.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class IncrementalDocument
+{
+    private static final Token[] NO_TOKENS = new Token[0];
+
+    /**
+     * One line of the document and its tokens
+     */
+    private static class Line
+    {
+        String text;
+        Token[] tokens;
+    }
+
+    // units: top-level statements or skipped runs of tokens, in parallel arrays.
+    // Diagnostics have line numbers relative to the unit's start line so that
+    // units behind an edit can be moved by changing their start lines only.
+    private int unitCount = 0;
+    private int[] unitLine = new int[16];        // line index of the unit's first token
+    private int[] unitToken = new int[16];       // index of that token in its line
+    private int[] unitLookahead = new int[16];   // line index of the token after the unit (the next unit's first token)
+    private Diagnostic[][] unitDiagnostics = new Diagnostic[16][];
+
+    private ArrayList<Line> lines = new ArrayList<Line>();
+    private int rescannedLines;
+    private int reparsedUnits;
+
+    /**
+     * Constructor for IncrementalDocument objects that reads a file, split into
+     * lines the way ScannerModule splits it
+     *
+     * @param fileName name of text file
+     * @throws IOException if the file cannot be read
+     */
+    public IncrementalDocument(String fileName) throws IOException
+    {
+        this(readLines(new File(fileName)));
+    }
+
+    /**
+     * Constructor for IncrementalDocument objects
+     *
+     * @param text lines of the program, without line terminators
+     */
+    public IncrementalDocument(List<String> text)
+    {
+        replaceLines(1, 0, text);
+    }
+
+    private static List<String> readLines(File file) throws IOException
+    {
+        List<String> text = new ArrayList<String>();
+        ScannerLineSource input = new ScannerLineSource(file);
+        while (input.hasNextLine())
+        {
+            input.nextLine();
+            text.add(new String(input.lineBuffer(), input.lineStart(), input.lineLength()));
+        }
+        input.close();
+        return text;
+    }
+
+    /**
+     * Replaces lines of the document and updates its tokens and parse errors
+     *
+     * @param first   line number of the first line to replace, from 1 to lineCount() + 1
+     * @param count   number of lines to replace; 0 to insert before line first
+     * @param newText lines replacing them, without line terminators
+     */
+    public void replaceLines(int first, int count, List<String> newText)
+    {
+        if (first < 1 || count < 0 || first - 1 + count > lines.size())
+        {
+            throw new IndexOutOfBoundsException("lines " + first + " to " + (first + count - 1)
+                                                + " of a document with " + lines.size() + " lines");
+        }
+        int a = first - 1;
+        int b = a + count;
+        List<Line> replacement = scan(newText);
+        rescannedLines = replacement.size();
+        lines.subList(a, b).clear();
+        lines.addAll(a, replacement);
+        reparse(a, b, replacement.size() - count);
+    }
+
+    /**
+     * Replaces lines of the document by a piece of text that may span lines
+     *
+     * @param first line number of the first line to replace
+     * @param count number of lines to replace; 0 to insert before line first
+     * @param text  text replacing them; split at \n, \r\n and \r
+     */
+    public void replaceLines(int first, int count, String text)
+    {
+        replaceLines(first, count, Arrays.asList(text.split("\r\n|\n|\r", -1)));
+    }
+
+    /**
+     * Scans lines with one ScannerModule and splits its tokens by line.  The
+     * scan is counted in ValidationMetrics as a rescan, not as a scanned file.
+     */
+    private static List<Line> scan(final List<String> text)
+    {
+        List<Line> scanned = new ArrayList<Line>(text.size());
+        if (text.isEmpty())
+        {
+            return scanned;
+        }
+        LineSource source = new LineSource()
+        {
+            private int next = 0;
+            private char[] chars;
+
+            public boolean hasNextLine()
+            {
+                return next < text.size();
+            }
+
+            public void nextLine()
+            {
+                chars = text.get(next++).toCharArray();
+            }
+
+            public char[] lineBuffer()
+            {
+                return chars;
+            }
+
+            public int lineStart()
+            {
+                return 0;
+            }
+
+            public int lineLength()
+            {
+                return chars.length;
+            }
+
+            public void close()
+            {
+            }
+        };
+        long start = System.nanoTime();
+        PackedTokenBuffer buffer = new PackedTokenBuffer(text.size() * 4);
+        ScannerModule scanner = new ScannerModule(source);
+        scanner.setReportingEnabled(false);
+        scanner.getTokens(buffer);
+        ValidationMetrics.recordRescan(System.nanoTime() - start, text.size());
+        int count = buffer.size() - 1;    // without EndOfFile
+        int i = 0;
+        for (int n = 0; n < text.size(); n++)
+        {
+            int end = i;
+            while (end < count && buffer.line(end) == n + 1)
+            {
+                end++;
+            }
+            Line line = new Line();
+            line.text = text.get(n);
+            line.tokens = end == i ? NO_TOKENS : new Token[end - i];
+            for (int t = i; t < end; t++)
+            {
+                line.tokens[t - i] = buffer.token(t);
+            }
+            scanned.add(line);
+            i = end;
+        }
+        return scanned;
+    }
+
+    /**
+     * Parses the units affected by replacing the old lines [a, b) by lines
+     * whose number differs by delta, and keeps the other units
+     */
+    private void reparse(int a, int b, int delta)
+    {
+        // first unit whose tokens or following token lie at or after the line before the edit
+        int low = 0;
+        int high = unitCount;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (unitLookahead[mid] < a - 1)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        int f = low;
+        // the last unit is followed by the end of the file, so f is a unit unless there are none;
+        // it starts before the edit, or is the first unit
+        int startLine = 0;
+        int startToken = 0;
+        if (f > 0)
+        {
+            startLine = unitLine[f];
+            startToken = unitToken[f];
+        }
+
+        // the old units behind the edit are where parsing can stop
+        int k = f;
+        while (k < unitCount && unitLine[k] < b)
+        {
+            k++;
+        }
+        for (int i = k; i < unitCount; i++)
+        {
+            unitLine[i] += delta;
+            unitLookahead[i] += delta;
+        }
+
+        IntList parsedLine = new IntList();
+        IntList parsedToken = new IntList();
+        IntList parsedLookahead = new IntList();
+        List<Diagnostic[]> parsedDiagnostics = new ArrayList<Diagnostic[]>();
+        UnitSource source = new UnitSource(startLine, startToken);
+        UnitParser parser = new UnitParser(source);
+        parser.start();
+        while (parser.currentId() != Token.EndOfFile)
+        {
+            int line = source.line;
+            int token = source.token;
+            while (k < unitCount && (unitLine[k] < line || (unitLine[k] == line && unitToken[k] < token)))
+            {
+                k++;
+            }
+            if (k < unitCount && unitLine[k] == line && unitToken[k] == token && line >= b + delta)
+            {
+                break;    // back in step with the old units
+            }
+            int errors = parser.getDiagnostics().size();
+            parser.parseUnit();
+            List<Diagnostic> found = parser.getDiagnostics().subList(errors, parser.getDiagnostics().size());
+            Diagnostic[] relative = new Diagnostic[found.size()];
+            for (int i = 0; i < relative.length; i++)
+            {
+                Diagnostic d = found.get(i);
+                relative[i] = new Diagnostic(d.getLine() - 1 - line, d.getMessage());
+            }
+            parsedLine.add(line);
+            parsedToken.add(token);
+            parsedLookahead.add(source.line);
+            parsedDiagnostics.add(relative);
+        }
+        if (parser.currentId() == Token.EndOfFile)
+        {
+            k = unitCount;
+        }
+        reparsedUnits = parsedLine.size;
+
+        // units [f, k) are replaced by the parsed ones
+        int newCount = unitCount - (k - f) + reparsedUnits;
+        if (newCount > unitLine.length)
+        {
+            int capacity = Math.max(newCount, unitLine.length * 2);
+            unitLine = Arrays.copyOf(unitLine, capacity);
+            unitToken = Arrays.copyOf(unitToken, capacity);
+            unitLookahead = Arrays.copyOf(unitLookahead, capacity);
+            unitDiagnostics = Arrays.copyOf(unitDiagnostics, capacity);
+        }
+        int to = f + reparsedUnits;
+        System.arraycopy(unitLine, k, unitLine, to, unitCount - k);
+        System.arraycopy(unitToken, k, unitToken, to, unitCount - k);
+        System.arraycopy(unitLookahead, k, unitLookahead, to, unitCount - k);
+        System.arraycopy(unitDiagnostics, k, unitDiagnostics, to, unitCount - k);
+        System.arraycopy(parsedLine.values, 0, unitLine, f, reparsedUnits);
+        System.arraycopy(parsedToken.values, 0, unitToken, f, reparsedUnits);
+        System.arraycopy(parsedLookahead.values, 0, unitLookahead, f, reparsedUnits);
+        for (int i = 0; i < reparsedUnits; i++)
+        {
+            unitDiagnostics[f + i] = parsedDiagnostics.get(i);
+        }
+        for (int i = newCount; i < unitCount; i++)
+        {
+            unitDiagnostics[i] = null;
+        }
+        unitCount = newCount;
+    }
+
+    /**
+     * Checks if the document is a valid SimpCalc program
+     * @return true if there are no parse errors
+     */
+    public boolean isValid()
+    {
+        for (int u = 0; u < unitCount; u++)
+        {
+            if (unitDiagnostics[u].length > 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Accessor method for the parse errors of the document
+     * @return the errors a NewParserModule would find in the document, in order
+     */
+    public List<Diagnostic> getDiagnostics()
+    {
+        List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+        for (int u = 0; u < unitCount; u++)
+        {
+            for (Diagnostic d : unitDiagnostics[u])
+            {
+                diagnostics.add(new Diagnostic(d.getLine() + 1 + unitLine[u], d.getMessage()));
+            }
+        }
+        return diagnostics;
+    }
+
+    /**
+     * Accessor method for the number of lines
+     * @return number of lines in the document
+     */
+    public int lineCount()
+    {
+        return lines.size();
+    }
+
+    /**
+     * Accessor method for the text of a line
+     * @param lineNumber line number, starting at 1
+     * @return text of the line
+     */
+    public String line(int lineNumber)
+    {
+        return lines.get(lineNumber - 1).text;
+    }
+
+    /**
+     * Accessor method for the tokens of a line
+     * @param lineNumber line number, starting at 1
+     * @return tokens of the line; the array must not be modified
+     */
+    public Token[] tokens(int lineNumber)
+    {
+        return lines.get(lineNumber - 1).tokens;
+    }
+
+    /**
+     * Accessor method for the number of lines scanned by the last edit
+     * @return number of lines scanned
+     */
+    public int getRescannedLines()
+    {
+        return rescannedLines;
+    }
+
+    /**
+     * Accessor method for the number of units parsed by the last edit
+     * @return number of top-level statements and skipped token runs parsed
+     */
+    public int getReparsedUnits()
+    {
+        return reparsedUnits;
+    }
+
+    /**
+     * Hands out the tokens of the document's lines, starting at a given
+     * token, and remembers the position of the last token handed out
+     */
+    private class UnitSource implements TokenSource
+    {
+        int line;     // position of the last token returned
+        int token;
+        private int nextLine;
+        private int nextToken;
+
+        UnitSource(int line, int token)
+        {
+            nextLine = line;
+            nextToken = token;
+        }
+
+        public Token getToken()
+        {
+            while (nextLine < lines.size() && nextToken >= lines.get(nextLine).tokens.length)
+            {
+                nextLine++;
+                nextToken = 0;
+            }
+            line = nextLine;
+            token = nextToken;
+            if (nextLine == lines.size())
+            {
+                return Token.fixed(Token.EndOfFile);
+            }
+            return lines.get(nextLine).tokens[nextToken++];
+        }
+
+        public int getLineNumber()
+        {
+            // the scanner reports the last line for the end of the file
+            return line == lines.size() ? Math.max(lines.size(), 1) : line + 1;
+        }
+    }
+
+    /**
+     * Growable int array
+     */
+    private static class IntList
+    {
+        int[] values = new int[16];
+        int size = 0;
+
+        void add(int value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * NewParserModule that parses one unit at a time
+     */
+    private static class UnitParser extends NewParserModule
+    {
+        UnitParser(TokenSource source)
+        {
+            super(source);
+        }
+
+        void start()
+        {
+            getNextToken();
+        }
+
+        int currentId()
+        {
+            return currentId;
+        }
+
+        // one round of the loop in Prg(): a statement, or a token that cannot start one
+        void parseUnit()
+        {
+            try
+            {
+                if (currentId == Token.Identifier || currentId == Token.Print || currentId == Token.If)
+                {
+                    Stm();
+                }
+                else
+                {
+                    match(Token.EndOfFile);
+                }
+            } catch (Resync e)
+            {
+                recover();
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * IncrementalDocumentTester checks that an IncrementalDocument ends up with
+ * the tokens and parse errors a full scan and parse of the same text gives.
+ * It loads a program, applies a series of random edits (replacing, inserting
+ * and deleting runs of lines, with lines of the program or lines of random
+ * tokens that break statements and IF nesting) and after each edit compares
+ * the document with a NewParserModule run over the whole text.  It reports
+ * the first few mismatches, then how much of the document the edits
+ * rescanned and reparsed on average.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class IncrementalDocumentTester
+{
+    // pieces of the random lines, weighted towards the tokens that open and close statements
+    private static final String[] PIECES =
+    {
+        "x", "y", "total", "1", "2.5", "+", "-", "*", "(", ")", ":=", ";", ";", ";",
+        "PRINT", "IF", "ELSE", "ENDIF", "SQRT", ":", "<", ">=", "AND", ",", "\"s\"", "// c", "\"ab"
+    };
+
+    /**
+     * Driver method for the edit test
+     *
+     * @param args optional command line string argument (args[0]) to specify name of text file,
+     *             followed by the number of edits (args[1], default 1000) and the seed of the
+     *             random edits (args[2], default 1)
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String fileName = "sample3.txt";
+        int edits = 1000;
+        long seed = 1;
+        if (args.length >= 1)
+        {
+            fileName = args[0];
+        }
+        if (args.length >= 2)
+        {
+            edits = Integer.parseInt(args[1]);
+        }
+        if (args.length >= 3)
+        {
+            seed = Long.parseLong(args[2]);
+        }
+        IncrementalDocument document = new IncrementalDocument(fileName);
+        List<String> original = new ArrayList<String>();
+        for (int i = 1; i <= document.lineCount(); i++)
+        {
+            original.add(document.line(i));
+        }
+        List<String> text = new ArrayList<String>(original);
+        Random random = new Random(seed);
+        int mismatches = 0;
+        long rescanned = 0;
+        long reparsed = 0;
+        for (int edit = 1; edit <= edits; edit++)
+        {
+            int first = 1 + random.nextInt(text.size() + 1);
+            int count = random.nextInt(Math.min(3, text.size() - first + 1) + 1);
+            List<String> newText = new ArrayList<String>();
+            for (int i = random.nextInt(4); i > 0; i--)
+            {
+                newText.add(random.nextBoolean() && !original.isEmpty()
+                            ? original.get(random.nextInt(original.size()))
+                            : randomLine(random));
+            }
+            document.replaceLines(first, count, newText);
+            text.subList(first - 1, first - 1 + count).clear();
+            text.addAll(first - 1, newText);
+            rescanned += document.getRescannedLines();
+            reparsed += document.getReparsedUnits();
+            String mismatch = compare(document, text);
+            if (mismatch != null)
+            {
+                mismatches++;
+                if (mismatches <= 3)
+                {
+                    System.out.println("Edit " + edit + " (replace " + count + " line(s) at line " + first
+                                       + " by " + newText + "): " + mismatch);
+                }
+            }
+        }
+        System.out.printf("%d edits, %d mismatches, %d lines at the end, %.1f lines rescanned"
+                          + " and %.1f units reparsed per edit%n",
+                          edits, mismatches, text.size(), (double) rescanned / edits, (double) reparsed / edits);
+    }
+
+    // a line of 0 to 7 random pieces, or an empty line
+    private static String randomLine(Random random)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(8); i > 0; i--)
+        {
+            sb.append(PIECES[random.nextInt(PIECES.length)]).append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Compares a document with a full scan and parse of its text
+     *
+     * @param document document after an edit
+     * @param text     lines the document should hold
+     * @return description of the first difference, or null if there is none
+     */
+    private static String compare(IncrementalDocument document, List<String> text)
+    {
+        if (document.lineCount() != text.size())
+        {
+            return "document has " + document.lineCount() + " lines instead of " + text.size();
+        }
+        ScannerModule scanner = new ScannerModule(lines(text));
+        for (int i = 1; i <= text.size(); i++)
+        {
+            Token[] tokens = document.tokens(i);
+            for (int t = 0; t < tokens.length; t++)
+            {
+                Token expected = scanner.getToken();
+                if (scanner.getLineNumber() != i || expected.getId() != tokens[t].getId()
+                    || !expected.getLexeme().equals(tokens[t].getLexeme()))
+                {
+                    return "token " + tokens[t] + " on line " + i + " instead of " + expected
+                           + " on line " + scanner.getLineNumber();
+                }
+            }
+        }
+        NewParserModule parser = new NewParserModule(new ScannerModule(lines(text)));
+        parser.parse();
+        String expected = parser.getDiagnostics().toString();
+        String actual = document.getDiagnostics().toString();
+        if (!expected.equals(actual))
+        {
+            return "errors " + actual + " instead of " + expected;
+        }
+        return null;
+    }
+
+    // the lines of a text for a ScannerModule
+    private static LineSource lines(final List<String> text)
+    {
+        return new LineSource()
+        {
+            private int next = 0;
+            private char[] line;
+
+            public boolean hasNextLine()
+            {
+                return next < text.size();
+            }
+
+            public void nextLine()
+            {
+                line = text.get(next++).toCharArray();
+            }
+
+            public char[] lineBuffer()
+            {
+                return line;
+            }
+
+            public int lineStart()
+            {
+                return 0;
+            }
+
+            public int lineLength()
+            {
+                return line.length;
+            }
+
+            public void close()
+            {
+            }
+        };
+    }
+}
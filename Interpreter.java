@@ -0,0 +1,333 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Interpreter runs a SimpCalc program from the SyntaxTree built by
+ * NewParserModule.parseTree().  Before the first run every identifier is
+ * resolved to a dense slot number, numbering the program's variables in
+ * the order they first occur (an identifier the scanner interned is looked
+ * up by its symbol, so its name is only interned here once per variable),
+ * and every number literal and string is decoded once, so running a program only indexes a double[] environment
+ * and never looks up a variable by name or boxes a value.  One Interpreter
+ * can run its program any number of times.
+ *
+ * Semantics: arithmetic is IEEE double arithmetic (x/0 is infinite, SQRT of
+ * a negative number is NaN), ** is Math.pow, AND and OR treat non-zero values
+ * as true, and PRINT writes its arguments separated by spaces on one line.
+ * Reading a variable before it has been assigned is an error.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class Interpreter implements RunnableProgram
+{
+    private SyntaxTree tree;
+    private int[] slot;          // variable slot of IDENTIFIER and ASSIGN nodes
+    private int[] operator;      // token id of BINARY and CONDITION nodes
+    private double[] constant;   // value of NUMBER nodes
+    private String[] text;       // text of STRING nodes without the quotes
+    private SymbolTable symbols; // variable names, with their slots as symbols
+
+    private StringBuilder line = new StringBuilder();
+    private int[] pendingNodes = new int[64];   // evaluate(): nodes to visit, ~node to apply node
+    private double[] values = new double[64];   // evaluate(): operand values
+
+    /**
+     * Constructor for Interpreter objects.  Resolves the variables and literals of the program.
+     *
+     * @param tree syntax tree of a valid program
+     */
+    public Interpreter(SyntaxTree tree)
+    {
+        this.tree = tree;
+        int size = tree.size();
+        slot = new int[size];
+        operator = new int[size];
+        constant = new double[size];
+        text = new String[size];
+        PackedTokenBuffer tokens = tree.tokens();
+        symbols = new SymbolTable();
+        // slot of each symbol of the scanner's table, which may hold the names of other programs too
+        int[] slotOfSymbol = new int[tokens.symbolTable() == null ? 0 : tokens.symbolTable().size()];
+        Arrays.fill(slotOfSymbol, -1);
+        for (int n = 0; n < size; n++)
+        {
+            switch (tree.kind(n))
+            {
+                case SyntaxTree.IDENTIFIER:
+                case SyntaxTree.ASSIGN:
+                    int t = tree.token(n);
+                    int symbol = tokens.symbol(t);
+                    if (symbol < 0 || symbol >= slotOfSymbol.length)
+                    {
+                        slot[n] = symbols.intern(tokens.text(), tokens.start(t), tokens.length(t));
+                    }
+                    else
+                    {
+                        if (slotOfSymbol[symbol] < 0)
+                        {
+                            slotOfSymbol[symbol] = symbols.intern(tokens.text(), tokens.start(t), tokens.length(t));
+                        }
+                        slot[n] = slotOfSymbol[symbol];
+                    }
+                    break;
+                case SyntaxTree.BINARY:
+                case SyntaxTree.CONDITION:
+                    operator[n] = tree.tokenId(n);
+                    break;
+                case SyntaxTree.NUMBER:
+                    constant[n] = tokens.value(tree.token(n));
+                    break;
+                case SyntaxTree.STRING:
+                    String lexeme = tree.lexeme(n);
+                    text[n] = lexeme.substring(1, lexeme.length() - 1);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Accessor method for the number of variables
+     * @return number of distinct variables in the program
+     */
+    public int slotCount()
+    {
+        return symbols.size();
+    }
+
+    /**
+     * Accessor method for the name of a variable
+     * @param s variable slot
+     * @return variable name
+     */
+    public String name(int s)
+    {
+        return symbols.name(s);
+    }
+
+    /**
+     * Accessor method for the variable slot of an IDENTIFIER or ASSIGN node
+     * @param node node index
+     * @return variable slot
+     */
+    public int slotOf(int node)
+    {
+        return slot[node];
+    }
+
+    /**
+     * Accessor method for the value of a NUMBER node
+     * @param node node index
+     * @return decoded number
+     */
+    public double constantOf(int node)
+    {
+        return constant[node];
+    }
+
+    /**
+     * Accessor method for the text of a STRING node
+     * @param node node index
+     * @return string without its quotes
+     */
+    public String textOf(int node)
+    {
+        return text[node];
+    }
+
+    /**
+     * Accessor method for the syntax tree
+     * @return tree the program was resolved from
+     */
+    public SyntaxTree tree()
+    {
+        return tree;
+    }
+
+    /**
+     * Finds the slot of a variable
+     * @param name variable name
+     * @return slot of the variable, or -1 if the program does not use it
+     */
+    public int slot(String name)
+    {
+        return symbols.find(name);
+    }
+
+    /**
+     * Runs the program
+     *
+     * @param out stream PRINT statements write to
+     * @return final values of the variables, indexed by slot; NaN for variables never assigned
+     * @throws IllegalStateException if a variable is read before it is assigned
+     */
+    public double[] run(PrintStream out)
+    {
+        double[] env = new double[symbols.size()];
+        boolean[] assigned = new boolean[symbols.size()];
+        Arrays.fill(env, Double.NaN);
+        execute(tree.root(), env, assigned, out);
+        return env;
+    }
+
+    private void execute(int n, double[] env, boolean[] assigned, PrintStream out)
+    {
+        switch (tree.kind(n))
+        {
+            case SyntaxTree.PROGRAM:
+            case SyntaxTree.BLOCK:
+                for (int child = tree.firstChild(n); child != SyntaxTree.NONE; child = tree.nextSibling(child))
+                {
+                    execute(child, env, assigned, out);
+                }
+                break;
+            case SyntaxTree.ASSIGN:
+                env[slot[n]] = evaluate(tree.firstChild(n), env, assigned);
+                assigned[slot[n]] = true;
+                break;
+            case SyntaxTree.PRINT:
+                line.setLength(0);
+                for (int arg = tree.firstChild(n); arg != SyntaxTree.NONE; arg = tree.nextSibling(arg))
+                {
+                    if (arg != tree.firstChild(n))
+                    {
+                        line.append(' ');
+                    }
+                    if (tree.kind(arg) == SyntaxTree.STRING)
+                    {
+                        line.append(text[arg]);
+                    }
+                    else
+                    {
+                        append(line, evaluate(arg, env, assigned));
+                    }
+                }
+                out.println(line);
+                break;
+            case SyntaxTree.IF:
+                int condition = tree.firstChild(n);
+                int then = tree.nextSibling(condition);
+                if (test(condition, env, assigned))
+                {
+                    execute(then, env, assigned, out);
+                }
+                else if (tree.nextSibling(then) != SyntaxTree.NONE)
+                {
+                    execute(tree.nextSibling(then), env, assigned, out);
+                }
+                break;
+        }
+    }
+
+    private boolean test(int n, double[] env, boolean[] assigned)
+    {
+        int left = tree.firstChild(n);
+        double a = evaluate(left, env, assigned);
+        double b = evaluate(tree.nextSibling(left), env, assigned);
+        switch (operator[n])
+        {
+            case Token.LessThan:    return a < b;
+            case Token.Equal:       return a == b;
+            case Token.GreaterThan: return a > b;
+            case Token.LTEqual:     return a <= b;
+            case Token.NotEqual:    return a != b;
+            case Token.GTEqual:     return a >= b;
+            case Token.And:         return a != 0 && b != 0;
+            default:                return a != 0 || b != 0;    // Or
+        }
+    }
+
+    // evaluates an expression by a post-order walk with explicit stacks, so chains
+    // of tens of thousands of terms do not recurse once per tree level
+    private double evaluate(int root, double[] env, boolean[] assigned)
+    {
+        int nodeTop = 0;
+        int valueTop = 0;
+        pendingNodes[nodeTop++] = root;
+        while (nodeTop > 0)
+        {
+            int n = pendingNodes[--nodeTop];
+            if (n < 0)
+            {
+                // ~n has had its operands evaluated
+                n = ~n;
+                switch (tree.kind(n))
+                {
+                    case SyntaxTree.NEGATE:
+                        values[valueTop - 1] = -values[valueTop - 1];
+                        break;
+                    case SyntaxTree.SQRT:
+                        values[valueTop - 1] = Math.sqrt(values[valueTop - 1]);
+                        break;
+                    default:    // BINARY
+                        double b = values[--valueTop];
+                        double a = values[valueTop - 1];
+                        values[valueTop - 1] = apply(operator[n], a, b);
+                }
+                continue;
+            }
+            if (valueTop == values.length)
+            {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            switch (tree.kind(n))
+            {
+                case SyntaxTree.NUMBER:
+                    values[valueTop++] = constant[n];
+                    break;
+                case SyntaxTree.IDENTIFIER:
+                    int s = slot[n];
+                    if (!assigned[s])
+                    {
+                        throw new IllegalStateException("Variable " + symbols.name(s) + " used before assignment (line #"
+                                                        + tree.tokens().line(tree.token(n)) + ")");
+                    }
+                    values[valueTop++] = env[s];
+                    break;
+                default:    // NEGATE, SQRT or BINARY: revisit n after its operands, the left one first
+                    if (nodeTop + 3 > pendingNodes.length)
+                    {
+                        pendingNodes = Arrays.copyOf(pendingNodes, pendingNodes.length * 2);
+                    }
+                    pendingNodes[nodeTop++] = ~n;
+                    int left = tree.firstChild(n);
+                    if (tree.kind(n) == SyntaxTree.BINARY)
+                    {
+                        pendingNodes[nodeTop++] = tree.nextSibling(left);
+                    }
+                    pendingNodes[nodeTop++] = left;
+            }
+        }
+        return values[0];
+    }
+
+    private static double apply(int operator, double a, double b)
+    {
+        switch (operator)
+        {
+            case Token.Plus:     return a + b;
+            case Token.Minus:    return a - b;
+            case Token.Multiply: return a * b;
+            case Token.Divide:   return a / b;
+            default:             return Math.pow(a, b);    // Raise
+        }
+    }
+
+    /**
+     * Appends a value the way PRINT shows it: whole numbers without a fraction, others as Double.toString
+     *
+     * @param sb  builder to append to
+     * @param value value to append
+     */
+    public static void append(StringBuilder sb, double value)
+    {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+        {
+            sb.append((long) value);
+        }
+        else
+        {
+            sb.append(value);
+        }
+    }
+}
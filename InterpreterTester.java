@@ -0,0 +1,45 @@
+/**
+ * InterpreterTester class that tests the Interpreter and ProgramCompiler classes
+ * by parsing a SimpCalc program with a NewParserModule object and running it
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class InterpreterTester
+{
+    /**
+     * Driver method that parses a program and runs it
+     *
+     * @param args optional command line string argument (args[0]) to specify name of text file,
+     *             followed by -compile to run the program as a class generated by ProgramCompiler
+     */
+    public static void main(String[] args)
+    {
+        String fileName = "sample1.txt";
+        if (args.length >= 1)
+        {
+            fileName = args[0];
+        }
+        SyntaxTree tree = new NewParserModule(fileName).parseTree();
+        if (tree == null)
+        {
+            return;
+        }
+        try
+        {
+            RunnableProgram program;
+            if (args.length >= 2 && args[1].equals("-compile"))
+            {
+                program = ProgramCompiler.compile(tree);
+            }
+            else
+            {
+                program = new Interpreter(tree);
+            }
+            program.run(System.out);
+        } catch (IllegalStateException e)
+        {
+            System.out.println("Runtime Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * LineSource supplies the ScannerModule with its input one line at a time.
+ * The characters of the current line are exposed as a range of a char array
+ * so that the scanner can read them directly, without a String per line.
+ * Line terminators are never part of the range.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public interface LineSource
+{
+    /**
+     * Checks if there is another line of input.  Does not disturb the
+     * characters of the current line.
+     *
+     * @return true if nextLine() can be called
+     */
+    boolean hasNextLine();
+
+    /**
+     * Advances to the next line of input.  The previous line's characters
+     * may be overwritten by this call.
+     *
+     * @throws java.util.NoSuchElementException if there is no next line
+     */
+    void nextLine();
+
+    /**
+     * Accessor method for the array holding the current line
+     * @return array holding the current line
+     */
+    char[] lineBuffer();
+
+    /**
+     * Accessor method for the position of the current line in lineBuffer()
+     * @return index of the first character of the current line
+     */
+    int lineStart();
+
+    /**
+     * Accessor method for the length of the current line
+     * @return number of characters in the current line
+     */
+    int lineLength();
+
+    /**
+     * Releases the underlying file
+     */
+    void close();
+}
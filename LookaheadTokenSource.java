@@ -0,0 +1,203 @@
+/**
+ * LookaheadTokenSource puts a bounded ring buffer of tokens between a
+ * ScannerModule and its consumer.  Besides getToken() it offers peek(k) to
+ * look at upcoming tokens without consuming them, and mark()/reset() to
+ * return to an earlier position, so grammar extensions that need more than
+ * one token of lookahead do not have to rescan.  The ring is refilled in
+ * batches through ScannerModule.getTokens() rather than by one getToken()
+ * call per token, and holds the same tokens getToken() would have returned:
+ * the shared tokens of fixed lexemes and of interned identifiers, and
+ * NumberTokens and SliceTokens whose lexemes are copied into a shared chunk,
+ * so no String is made per token.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class LookaheadTokenSource implements TokenSource
+{
+    private static final int BATCH_SIZE = 64;
+    private static final int LEXEME_CHUNK = 8192;
+
+    private ScannerModule scanner;
+    private PackedTokenBuffer batch = new PackedTokenBuffer(BATCH_SIZE);
+    private Token[] ring;
+    private int[] lines;
+    private int mask;
+    private long head = 0;       // position of the next token to be consumed
+    private long tail = 0;       // position of the next token to be scanned
+    private long mark = -1;      // position saved by mark(), or -1
+    private int markLine;        // lineNumber at the mark
+    private int lineNumber = 1;  // line of the last consumed token
+    private char[] lexemes = new char[LEXEME_CHUNK];   // shared by the SliceTokens made from the batches
+    private int lexemesUsed;
+
+    /**
+     * Constructor for LookaheadTokenSource objects
+     *
+     * @param scanner scanner the tokens are read from
+     * @param capacity maximum number of buffered tokens; rounded up to a power of two
+     */
+    public LookaheadTokenSource(ScannerModule scanner, int capacity)
+    {
+        this.scanner = scanner;
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        ring = new Token[size];
+        lines = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Consumes the next token
+     *
+     * @return next token
+     */
+    public Token getToken()
+    {
+        if (head == tail)
+        {
+            fill(1);
+        }
+        int slot = (int) head & mask;
+        head++;
+        lineNumber = lines[slot];
+        return ring[slot];
+    }
+
+    /**
+     * Accessor method for the line number of the last token returned by getToken()
+     * @return line number of the last consumed token
+     */
+    public int getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * Looks at an upcoming token without consuming it
+     *
+     * @param k 1 for the token the next getToken() returns, 2 for the one after it, and so on
+     * @return k-th upcoming token
+     * @throws IllegalArgumentException if k tokens do not fit in the buffer
+     */
+    public Token peek(int k)
+    {
+        if (head + k > tail)
+        {
+            fill((int) (head + k - tail));
+        }
+        return ring[(int) (head + k - 1) & mask];
+    }
+
+    /**
+     * Looks at the id of an upcoming token without consuming it
+     *
+     * @param k 1 for the token the next getToken() returns, 2 for the one after it, and so on
+     * @return id of the k-th upcoming token
+     */
+    public int peekId(int k)
+    {
+        return peek(k).getId();
+    }
+
+    /**
+     * Remembers the current position so that reset() can return to it.
+     * Tokens consumed after the mark stay buffered, so at most the buffer's
+     * capacity can be consumed before reset() is called.
+     */
+    public void mark()
+    {
+        mark = head;
+        markLine = lineNumber;
+    }
+
+    /**
+     * Returns to the position saved by mark(), so the tokens consumed since
+     * then are returned again
+     *
+     * @throws IllegalStateException if mark() was not called
+     */
+    public void reset()
+    {
+        if (mark < 0)
+        {
+            throw new IllegalStateException("reset() without mark()");
+        }
+        head = mark;
+        lineNumber = markLine;
+    }
+
+    /**
+     * Discards the mark so its tokens no longer occupy the buffer
+     */
+    public void unmark()
+    {
+        mark = -1;
+    }
+
+    /**
+     * Scans at least count more tokens into the ring, in batches as large as the free space allows
+     */
+    private void fill(int count)
+    {
+        long keep = mark >= 0 ? mark : head;
+        if (tail + count - keep > ring.length)
+        {
+            throw new IllegalArgumentException("lookahead exceeds buffer capacity of " + ring.length + " tokens");
+        }
+        while (count > 0)
+        {
+            int free = (int) (ring.length - (tail - keep));
+            batch.clear();
+            int n = scanner.getTokens(batch, Math.min(free, Math.max(count, BATCH_SIZE)));
+            for (int i = 0; i < n; i++)
+            {
+                int slot = (int) (tail + i) & mask;
+                ring[slot] = token(i);
+                lines[slot] = batch.line(i);
+            }
+            tail += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Makes the token ScannerModule.getToken() would have returned for a token of the batch
+     *
+     * @param i index of the token in the batch
+     * @return token with its lexeme copied out of the batch, which is reused
+     */
+    private Token token(int i)
+    {
+        int id = batch.id(i);
+        Token token = Token.fixed(id);
+        if (token != null)
+        {
+            return token;
+        }
+        if (id == Token.Error)
+        {
+            return new Token(id, "");
+        }
+        if (batch.symbol(i) >= 0)
+        {
+            return batch.symbolTable().token(batch.symbol(i));
+        }
+        int length = batch.length(i);
+        if (lexemesUsed + length > lexemes.length)
+        {
+            lexemes = new char[Math.max(LEXEME_CHUNK, length)];
+            lexemesUsed = 0;
+        }
+        System.arraycopy(batch.text(), batch.start(i), lexemes, lexemesUsed, length);
+        if (id == Token.Number)
+        {
+            token = new NumberToken(lexemes, lexemesUsed, length, batch.value(i));
+        }
+        else
+        {
+            token = new SliceToken(id, lexemes, lexemesUsed, length);
+        }
+        lexemesUsed += length;
+        return token;
+    }
+}
@@ -0,0 +1,282 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * MappedLineSource reads lines from a memory-mapped file, or from bytes that
+ * are already in memory.  The file is mapped through a FileChannel a window
+ * at a time and decoded into a large char array that is reused for the whole
+ * scan.  Line boundaries are found here rather
+ * than by a regular expression, using the same terminators as
+ * java.util.Scanner.nextLine() (\r\n, \n, \r, \u2028, \u2029 and \u0085)
+ * so that ScannerModule sees exactly the same lines in either input mode.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class MappedLineSource implements LineSource
+{
+    private static final int MAP_SIZE = 1 << 26;      // bytes mapped per window
+    private static final int BUFFER_SIZE = 1 << 16;   // chars decoded per fill
+
+    private FileChannel channel;      // null when reading bytes in memory
+    private long end;                 // file position where the input ends
+    private long windowStart = 0;     // file position of the current mapping
+    private ByteBuffer bytes;
+    private CharsetDecoder decoder;
+    private boolean decoded = false;  // true once the whole file has been decoded
+
+    private char[] buffer;            // decoded characters not yet delivered
+    private char[] spare;             // filled instead of buffer while it still holds the current line
+    private int position = 0;         // next undelivered character in buffer
+    private int limit = 0;            // end of decoded characters in buffer
+    private boolean skipLineFeed = false;  // previous line ended in '\r'
+
+    private char[] line;
+    private int lineStart = 0;
+    private int lineLength = 0;
+
+    /**
+     * Constructor for MappedLineSource objects.  Maps the first window of the
+     * file and decodes it with the platform default charset, as ScannerLineSource
+     * does, replacing bytes that are not valid in it with U+FFFD
+     *
+     * @param textFile file to be read
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedLineSource(File textFile) throws IOException
+    {
+        this(textFile, 0, -1);
+    }
+
+    /**
+     * Constructor for MappedLineSource objects that read only part of a file,
+     * from byte start up to byte end.  start should be the beginning of a line,
+     * so that the lines seen are lines of the whole file.
+     *
+     * @param textFile file to be read
+     * @param start file position of the first byte to read
+     * @param end file position after the last byte to read, or -1 for the end of the file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedLineSource(File textFile, long start, long end) throws IOException
+    {
+        channel = FileChannel.open(textFile.toPath(), StandardOpenOption.READ);
+        this.end = end < 0 ? channel.size() : end;
+        windowStart = start;
+        map();
+        init();
+    }
+
+    /**
+     * Constructor for MappedLineSource objects that read the remaining bytes
+     * of a buffer, e.g. the content of a file already read to hash it.  The
+     * bytes are decoded as those of a file are.
+     *
+     * @param content bytes to be read
+     */
+    public MappedLineSource(ByteBuffer content)
+    {
+        bytes = content.slice();
+        end = bytes.limit();
+        init();
+    }
+
+    private void init()
+    {
+        decoder = Charset.defaultCharset().newDecoder()
+                         .onMalformedInput(CodingErrorAction.REPLACE)
+                         .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        buffer = new char[BUFFER_SIZE];
+        line = buffer;
+    }
+
+    public boolean hasNextLine()
+    {
+        return available();
+    }
+
+    public void nextLine()
+    {
+        if (!available())
+        {
+            throw new NoSuchElementException("No line found");
+        }
+        int i = position;
+        while (true)
+        {
+            while (i < limit)
+            {
+                char ch = buffer[i];
+                if (ch <= '\r' ? (ch == '\n' || ch == '\r')
+                               : (ch == '\u0085' || ch == '\u2028' || ch == '\u2029'))
+                {
+                    setLine(i - position);
+                    position = i + 1;
+                    skipLineFeed = (ch == '\r');
+                    return;
+                }
+                i++;
+            }
+            if (decoded)
+            {
+                // last line of the file has no terminator
+                setLine(limit - position);
+                position = limit;
+                return;
+            }
+            // line continues past the decoded characters: move it to the front and decode more
+            int partial = limit - position;
+            char[] target = buffer;
+            if (partial > buffer.length - 2)
+            {
+                target = new char[buffer.length * 2];
+            }
+            System.arraycopy(buffer, position, target, 0, partial);
+            buffer = target;
+            position = 0;
+            limit = partial;
+            i = partial;
+            fill(partial);
+        }
+    }
+
+    public char[] lineBuffer()
+    {
+        return line;
+    }
+
+    public int lineStart()
+    {
+        return lineStart;
+    }
+
+    public int lineLength()
+    {
+        return lineLength;
+    }
+
+    public void close()
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        try
+        {
+            channel.close();
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    private void setLine(int length)
+    {
+        line = buffer;
+        lineStart = position;
+        lineLength = length;
+    }
+
+    /**
+     * Makes sure there is at least one undelivered character, refilling the
+     * buffer if needed.  The current line is left intact: if it lives in
+     * buffer, the spare array is filled instead.
+     *
+     * @return true if a character is available, false at end of file
+     */
+    private boolean available()
+    {
+        while (true)
+        {
+            if (position == limit)
+            {
+                if (buffer == line)
+                {
+                    if (spare == null)
+                    {
+                        spare = new char[BUFFER_SIZE];
+                    }
+                    char[] swap = buffer;
+                    buffer = spare;
+                    spare = swap;
+                }
+                position = 0;
+                limit = 0;
+                if (!fill(0))
+                {
+                    return false;
+                }
+            }
+            if (skipLineFeed)
+            {
+                // second half of a \r\n pair split across two fills
+                skipLineFeed = false;
+                if (buffer[position] == '\n')
+                {
+                    position++;
+                    continue;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Decodes more of the file into buffer, starting at offset, mapping the
+     * next window of the file when the current one runs out
+     *
+     * @param offset index in buffer where decoded characters go
+     * @return true if at least one character was decoded
+     */
+    private boolean fill(int offset)
+    {
+        CharBuffer out = CharBuffer.wrap(buffer, offset, buffer.length - offset);
+        while (out.position() == offset && !decoded)
+        {
+            boolean endOfInput = windowStart + bytes.limit() >= end;
+            CoderResult result = decoder.decode(bytes, out, endOfInput);
+            if (result.isOverflow())
+            {
+                break;
+            }
+            if (endOfInput)
+            {
+                if (decoder.flush(out).isOverflow())
+                {
+                    break;
+                }
+                decoded = true;
+            }
+            else
+            {
+                // bytes of a character split across windows are mapped again
+                windowStart += bytes.position();
+                map();
+            }
+        }
+        limit = out.position();
+        return limit > offset;
+    }
+
+    private void map()
+    {
+        try
+        {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                                Math.min(MAP_SIZE, end - windowStart));
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,3 +1,11 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * NewParserModule parses a SimpCalc program and determines if it follows
  * syntax rules.  Requires the Token class and ScannerModule class.
@@ -9,19 +17,71 @@
  */
 public class NewParserModule
 {
-    protected ScannerModule sm;           // the scanner module object from which getToken() is repeatedly called
-    protected Token currentToken = null;  // current token being processed
+    protected TokenSource sm;             // the scanner module object from which getToken() is repeatedly called
+    protected Token currentToken = null;  // current token being processed (null when parsing a PackedTokenBuffer)
+    protected int currentId;              // id of the current token
+    protected PackedTokenBuffer tokens;   // packed token stream, if parsing one instead of the scanner's tokens
+    protected int cursor = -1;            // index of the current token in tokens
     protected boolean errorFlag = false;  // set to true when an error occurs
+    protected List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();  // errors of the last parse
+    protected int errorLine;              // line of the last error, for recover()
+    protected int ifDepth = 0;            // number of IF statements whose ENDIF is still to come
+    protected ParseListener listener = ParseListener.NONE;  // receives statement, expression and error events
+    protected String sourceName;          // file parsed, for ValidationMetrics and ParseEvents
+    protected ValidationCache cache;      // results of earlier parses of the same content, if set
+
+    // operator stack of Exp(): token id of a binary operator or one of the marks, its token index and line
+    private static final int NEGATE_MARK = -1;  // unary - waiting for its Val
+    private static final int PAREN_MARK  = -2;  // ( waiting for its )
+    private static final int SQRT_MARK   = -3;  // SQRT( waiting for its )
+    private int[] opId = new int[32];
+    private int[] opToken = new int[32];
+    private int[] opLine = new int[32];
+    private int opTop;
+
+    // IF statements still open, indexed by ifDepth - 1: IF token index, pending() before
+    // the IF, its line, pending() before its current block, and whether that block is the ELSE part
+    private int[] ifToken = new int[16];
+    private int[] ifParts = new int[16];
+    private int[] ifLine = new int[16];
+    private int[] ifBlock = new int[16];
+    private boolean[] ifElse = new boolean[16];
+    protected SyntaxTree tree;            // tree being built by parseTree(), null for a plain parse()
+    protected PackedTokenBuffer recorded; // tokens read from sm while building a tree
 
     /**
-     * Constructor for NewParserModule objects.  Prepares the parsing activity
-     * by creating a scanner module object
+     * Constructor for NewParserModule objects.  Prepares the parsing activity;
+     * the scanner module object is created when the parse starts, so a file
+     * whose result is cached is never scanned
      *
      * @param filename specifies name of text file
      */
     public NewParserModule(String filename)
     {
-        sm = new ScannerModule(filename);
+        sourceName = filename;
+    }
+
+    /**
+     * Constructor for NewParserModule objects that take their tokens from the
+     * given source, e.g. a DfaScannerModule instead of the default ScannerModule
+     *
+     * @param source scanner from which getToken() is repeatedly called
+     */
+    public NewParserModule(TokenSource source)
+    {
+        sm = source;
+    }
+
+    /**
+     * Constructor for NewParserModule objects that parse an already scanned
+     * token stream, e.g. one filled by ScannerModule.getTokens().  No Token
+     * objects are created during the parse.
+     *
+     * @param tokens packed token stream ending with an EndOfFile token
+     */
+    public NewParserModule(PackedTokenBuffer tokens)
+    {
+        this.tokens = tokens;
     }
 
     /**
@@ -30,7 +90,113 @@ public class NewParserModule
      */
     protected void getNextToken()
     {
-        currentToken = sm.getToken();
+        if (tokens != null)
+        {
+            // stay on the last token (EndOfFile) once the stream is exhausted
+            if (cursor + 1 < tokens.size())
+            {
+                cursor++;
+            }
+            currentId = tokens.id(cursor);
+        }
+        else
+        {
+            currentToken = sm.getToken();
+            currentId = currentToken.getId();
+            if (recorded != null)
+            {
+                // tree nodes refer to tokens by index, so keep them
+                if (currentId == Token.Number)
+                {
+                    recorded.add(currentId, currentToken.getLexemeChars(), sm.getLineNumber(), currentToken.getValue());
+                }
+                else
+                {
+                    recorded.add(currentId, currentToken.getLexemeChars(), sm.getLineNumber());
+                }
+                cursor = recorded.size() - 1;
+                if (currentToken.getSymbol() >= 0)
+                {
+                    recorded.setSymbol(cursor, currentToken.getSymbol());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the listener that receives the events of the following parses,
+     * e.g. a TextParseListener to print what is recognized
+     *
+     * @param listener listener, or ParseListener.NONE to ignore the events
+     */
+    public void setParseListener(ParseListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the name under which parses are reported in ParseEvents, e.g. the
+     * file a PackedTokenBuffer was scanned from
+     *
+     * @param name name of the program
+     */
+    public void setSourceName(String name)
+    {
+        sourceName = name;
+    }
+
+    /**
+     * Sets a cache of earlier results for parse() to consult.  When the file
+     * named to the constructor has content the cache has seen before, parse()
+     * neither scans nor parses it: the cached errors are reported to the
+     * listener and recorded in getDiagnostics(), but no statement or
+     * expression events are.  Otherwise the content read to look it up is
+     * scanned from memory, so the file is read only once, and the tokens and
+     * errors of the parse are stored in the cache.  The cache is not used when
+     * parsing the tokens of a TokenSource or a PackedTokenBuffer or building a
+     * tree, and is bypassed if the file or the cache cannot be read or written.
+     *
+     * @param cache cache to use, or null to always parse
+     */
+    public void setCache(ValidationCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Adds a node to the tree being built, if any
+     *
+     * @param kind       one of the SyntaxTree node kinds
+     * @param tokenIndex index of the node's token, or SyntaxTree.NONE
+     * @param childCount number of most recently built nodes that become its children
+     */
+    protected void node(int kind, int tokenIndex, int childCount)
+    {
+        if (tree != null && !errorFlag)
+        {
+            tree.add(kind, tokenIndex, childCount);
+        }
+    }
+
+    /**
+     * Number of nodes built but not yet given a parent, used to count the
+     * children of nodes with a variable number of them
+     *
+     * @return number of unattached nodes
+     */
+    protected int pending()
+    {
+        return tree != null ? tree.pending() : 0;
+    }
+
+    /**
+     * Line number of the current token, for error messages
+     *
+     * @return line number reported by the scanner
+     */
+    protected int getLineNumber()
+    {
+        return tokens != null ? tokens.line(cursor) : sm.getLineNumber();
     }
 
     /**
@@ -41,7 +207,7 @@ public class NewParserModule
      */
     protected void match(int tokenId)
     {
-        if (currentToken.getId() == tokenId)
+        if (currentId == tokenId)
         {
             // ok, move to next token
             getNextToken();
@@ -49,7 +215,6 @@ public class NewParserModule
         else
         {
             parseError(Token.tokenNames[tokenId]+" expected.");
-            System.out.println(Token.tokenNames[currentToken.getId()]+", but expected "+Token.tokenNames[tokenId]);
         }
     }
 
@@ -58,30 +223,287 @@ public class NewParserModule
      * The first token is read and the subroutine for the start symbol of the grammar (Prg)
      * is called, initiating a recursive descent parse.
      *
+     * Parse errors do not stop the parse; each one is reported to the listener,
+     * recorded in getDiagnostics() and followed by error recovery.  Each parse
+     * is added to ValidationMetrics and recorded as a ParseEvent.  With a
+     * cache set, an unchanged file is not parsed at all; see setCache().
+     *
      * @return true if no errors were encountered during the parse, false otherwise.
      */
     public boolean parse()
     {
+        return parse(cacheContent());
+    }
+
+    /**
+     * Parses a file like parse(), but reads the whole file first and scans
+     * it into a PackedTokenBuffer rather than token by token.  With a cache
+     * set, the bytes read are also the ones hashed for the lookup, and are
+     * only scanned on a miss.
+     *
+     * @param file file to parse, which also becomes the source name
+     * @return true if no errors were encountered during the parse, false otherwise.
+     * @throws IOException if the file cannot be read
+     */
+    public boolean parse(File file) throws IOException
+    {
+        sourceName = file.getPath();
+        return parse(Files.readAllBytes(file.toPath()));
+    }
+
+    // parses content, or the scanner's tokens if it is null, unless the cache has the content's result
+    private boolean parse(byte[] content)
+    {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        long start = System.nanoTime();
         errorFlag = false;
-        getNextToken();
-        Prg();
+        diagnostics.clear();
+        ifDepth = 0;
+        cursor = -1;
+        String key = content == null || cache == null ? null : ValidationCache.key(content);
+        ValidationCache.Entry hit = key == null ? null : cache.lookup(key);
+        if (hit != null)
+        {
+            for (Diagnostic diagnostic : hit.getDiagnostics())
+            {
+                errorFlag = true;
+                diagnostics.add(diagnostic);
+                listener.error(diagnostic);
+            }
+        }
+        else
+        {
+            if (content != null)
+            {
+                tokens = scan(content);
+            }
+            else
+            {
+                openScanner();
+            }
+            getNextToken();
+            Prg();
+            if (key != null)
+            {
+                store(key);
+            }
+        }
+        listener.parseEnds(!errorFlag);
+        ValidationMetrics.recordParse(System.nanoTime() - start, diagnostics.size());
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.source = sourceName;
+            event.valid = !errorFlag;
+            event.errors = diagnostics.size();
+            event.cached = hit != null;
+            event.commit();
+        }
         return !errorFlag;
     }
 
+    // content of the source file if parse() may use the cache, null otherwise
+    private byte[] cacheContent()
+    {
+        if (cache == null || sm != null || tokens != null || tree != null)
+        {
+            return null;
+        }
+        try
+        {
+            return Files.readAllBytes(new File(sourceName).toPath());
+        } catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    // the tokens of the source file, scanned from its content already in memory
+    private PackedTokenBuffer scan(byte[] content)
+    {
+        PackedTokenBuffer buffer = new PackedTokenBuffer();
+        ScannerModule scanner = new ScannerModule(new MappedLineSource(ByteBuffer.wrap(content)));
+        scanner.setSourceName(sourceName);
+        scanner.getTokens(buffer);
+        return buffer;
+    }
+
+    // creates the scanner of the source file, unless tokens come from elsewhere
+    private void openScanner()
+    {
+        if (sm == null && tokens == null)
+        {
+            sm = new ScannerModule(sourceName);
+        }
+    }
+
+    private void store(String key)
+    {
+        try
+        {
+            cache.store(key, diagnostics, tokens);
+        } catch (IOException e)
+        {
+            // an entry that cannot be written only means the next parse of this content is not skipped
+        }
+    }
+
     /**
-     * Called whenever a parse error is encountered.  Normally, for more elegant error recovery,
-     * control is brought back to the parser so it can validate next constructs.
-     * But for this assignment, we just abort.
+     * Accessor method for the errors found by the last parse
+     * @return parse errors in the order they were found, empty if the program is valid
+     */
+    public List<Diagnostic> getDiagnostics()
+    {
+        return diagnostics;
+    }
+
+    /**
+     * Parses the input program like parse() and also builds its abstract syntax
+     * tree.  The tree is stored in primitive arrays and refers to the tokens by
+     * index, so it stays compact when many programs are kept in memory.
+     * Identifiers read from a ScannerModule are interned as they are scanned,
+     * in the scanner's SymbolTable or a new one, and the tree's tokens carry
+     * their symbols.
+     *
+     * @return tree of the program, or null if errors were encountered during the parse
+     */
+    public SyntaxTree parseTree()
+    {
+        openScanner();
+        if (tokens == null)
+        {
+            recorded = new PackedTokenBuffer();
+            if (sm instanceof ScannerModule)
+            {
+                ScannerModule scanner = (ScannerModule) sm;
+                if (scanner.getSymbolTable() == null)
+                {
+                    scanner.setSymbolTable(new SymbolTable());
+                }
+                recorded.setSymbolTable(scanner.getSymbolTable());
+            }
+        }
+        tree = new SyntaxTree(tokens != null ? tokens : recorded);
+        boolean valid = parse();
+        SyntaxTree result = tree;
+        tree = null;
+        recorded = null;
+        if (!valid)
+        {
+            return null;
+        }
+        result.trim();
+        return result;
+    }
+
+    /**
+     * Called whenever a parse error is encountered.  Records and reports the error,
+     * then abandons the current statement by throwing Resync, which Blk(), Stm() and Prg()
+     * catch to call recover() so the parser can validate the constructs that follow.
      *
      * @param errMessage string containing error message
      */
     protected void parseError(String errMessage)
     {
         errorFlag = true;
-        System.out.println("Parse Error: " + errMessage + " (line #" + sm.getLineNumber() + ")");
-        System.exit(0);
+        errorLine = getLineNumber();
+        Diagnostic diagnostic = new Diagnostic(errorLine, errMessage);
+        diagnostics.add(diagnostic);
+        listener.error(diagnostic);
+        throw RESYNC;
+    }
+
+    /**
+     * Panic-mode error recovery: skips tokens up to a point where a statement
+     * can be parsed again.  Stops after a semicolon, or before PRINT, IF, the
+     * end of file or an identifier on a later line than the error.  ELSE and
+     * ENDIF end the skipping too; they are left for the enclosing IF statement
+     * if there is one, and dropped (with an ENDIF's semicolon) otherwise.
+     */
+    protected void recover()
+    {
+        while (true)
+        {
+            switch (currentId)
+            {
+                case Token.Semicolon:
+                    getNextToken();
+                    return;
+                case Token.Print:
+                case Token.If:
+                case Token.EndOfFile:
+                    return;
+                case Token.Else:
+                case Token.Endif:
+                    if (ifDepth > 0)
+                    {
+                        return;
+                    }
+                    boolean endif = currentId == Token.Endif;
+                    getNextToken();
+                    if (endif && currentId == Token.Semicolon)
+                    {
+                        getNextToken();
+                    }
+                    return;
+                case Token.Identifier:
+                    if (getLineNumber() > errorLine)
+                    {
+                        return;
+                    }
+                    break;
+            }
+            getNextToken();
+        }
+    }
+
+    /**
+     * Recovery from an error in the condition of an IF statement: skips tokens
+     * through the colon, or up to where recover() would stop, and lets the IF
+     * statement go on with its body.
+     */
+    protected void recoverCondition()
+    {
+        while (currentId != Token.Colon)
+        {
+            switch (currentId)
+            {
+                case Token.Semicolon:
+                case Token.Print:
+                case Token.If:
+                case Token.Else:
+                case Token.Endif:
+                case Token.EndOfFile:
+                    return;
+                case Token.Identifier:
+                    if (getLineNumber() > errorLine)
+                    {
+                        return;
+                    }
+                    break;
+            }
+            getNextToken();
+        }
+        getNextToken();
     }
 
+    /**
+     * Thrown by parseError() to unwind to the statement being parsed.  Carries
+     * no stack trace, so errors are cheap even in files with many of them.
+     */
+    protected static class Resync extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        Resync()
+        {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Resync RESYNC = new Resync();
+
     /**
      * The remaining methods constitute the recursive descent parser that corresponds to the grammar:
      *
@@ -102,62 +524,149 @@ public class NewParserModule
      * Cnd -> Exp Rel Exp
      * Rel -> < | = | > | <= | != | >= | And | Or
      *
+     * Exp() parses the rules from Exp to Val by precedence climbing with an
+     * explicit operator stack instead of one method per rule.
      */
 
     // Prg -> Blk eof
     protected void Prg()
     {
+        int start = pending();
         Blk();
+        while (currentId != Token.EndOfFile)
+        {
+            // a token that cannot start a statement: report it, skip ahead and go on
+            try
+            {
+                match(Token.EndOfFile);
+            } catch (Resync e)
+            {
+                recover();
+            }
+            Blk();
+        }
         match(Token.EndOfFile);
+        node(SyntaxTree.PROGRAM, SyntaxTree.NONE, pending() - start);
     }
 
     // Blk -> Stm Blk | eps
+    // (the tail recursion is a loop, so long statement lists do not need a deep stack)
     protected void Blk()
     {
         // check for FIRST(Stm)
-        if (currentToken.getId() == Token.Identifier ||
-            currentToken.getId() == Token.Print ||
-            currentToken.getId() == Token.If
-           )
-        {
-            Stm();
-            Blk();
-        }
-        else
+        while (currentId == Token.Identifier ||
+               currentId == Token.Print ||
+               currentId == Token.If
+              )
         {
-            // do nothing (epsilon production)
+            try
+            {
+                Stm();
+            } catch (Resync e)
+            {
+                recover();
+            }
         }
+        // otherwise do nothing (epsilon production)
     }
 
     // Stm -> identifier := Exp ; | print ( Arg Argfollow ); | if Cnd : Blk Iffollow
+    // (the Blk and Iffollow of an IF statement are parsed by the loop here, with the IF
+    // statements still open kept on a stack, so deeply nested IF statements do not need
+    // a deep Java stack; errors inside them are recovered from as Blk() and Iffollow()
+    // would, and an error ending the outermost one is thrown to the caller)
     protected void Stm()
     {
-        switch(currentToken.getId())
+        int outer = ifDepth;
+        Stm1();
+        while (ifDepth > outer)
+        {
+            if (currentId == Token.Identifier ||
+                currentId == Token.Print ||
+                currentId == Token.If
+               )
+            {
+                // Blk -> Stm Blk
+                try
+                {
+                    Stm1();
+                } catch (Resync e)
+                {
+                    recover();
+                }
+            }
+            else
+            {
+                try
+                {
+                    Iffollow();
+                } catch (Resync e)
+                {
+                    ifDepth--;
+                    if (ifDepth == outer)
+                    {
+                        throw e;
+                    }
+                    recover();
+                }
+            }
+        }
+    }
+
+    // one statement, or of an IF statement the part up to its Blk
+    private void Stm1()
+    {
+        int line = getLineNumber();
+        listener.statementBegins(currentId, line);
+        switch(currentId)
         {
             case Token.Identifier:
+               int target = cursor;
                match(Token.Identifier);
                match(Token.Assign);
                Exp();
                match(Token.Semicolon);
-               System.out.println("Assignment Statement Recognized");
+               node(SyntaxTree.ASSIGN, target, 1);
+               listener.statementEnds(Token.Identifier, line);
                break;
             case Token.Print:
+               int print = cursor;
+               int args = pending();
                match(Token.Print);
                match(Token.LeftParen);
                Arg();
                Argfollow();
                match(Token.RightParen);
                match(Token.Semicolon);
-               System.out.println("Print Statement Recognized");
+               node(SyntaxTree.PRINT, print, pending() - args);
+               listener.statementEnds(Token.Print, line);
                break;
             case Token.If:
+               int ifIndex = cursor;
+               int parts = pending();
                match(Token.If);
-               System.out.println("If Statement Begins");
-               Cnd();
-               match(Token.Colon);
-               Blk();
-               Iffollow();
-               System.out.println("If Statement Ends");
+               try
+               {
+                   Cnd();
+                   match(Token.Colon);
+               } catch (Resync e)
+               {
+                   recoverCondition();
+               }
+               if (ifDepth == ifToken.length)
+               {
+                   ifToken = Arrays.copyOf(ifToken, ifDepth * 2);
+                   ifParts = Arrays.copyOf(ifParts, ifDepth * 2);
+                   ifLine = Arrays.copyOf(ifLine, ifDepth * 2);
+                   ifBlock = Arrays.copyOf(ifBlock, ifDepth * 2);
+                   ifElse = Arrays.copyOf(ifElse, ifDepth * 2);
+               }
+               ifToken[ifDepth] = ifIndex;
+               ifParts[ifDepth] = parts;
+               ifLine[ifDepth] = line;
+               ifBlock[ifDepth] = pending();
+               ifElse[ifDepth] = false;
+               ifDepth++;
                break;
             default:
                parseError("Invalid Statement");
@@ -165,25 +674,24 @@ public class NewParserModule
     }
 
     // Argfollow -> , Arg Argfollow | eps
+    // (the tail recursion is a loop, so long argument lists do not need a deep stack)
     protected void Argfollow()
     {
-        if (currentToken.getId() == Token.Comma)
+        while (currentId == Token.Comma)
         {
             match(Token.Comma);
             Arg();
-            Argfollow();
-        }
-        else
-        {
-            // do nothing (epsilon production)
         }
+        // otherwise do nothing (epsilon production)
     }
 
     // Arg -> string | Exp
     protected void Arg()
     {
-        if (currentToken.getId() == Token.String)
+        if (currentId == Token.String)
         {
+            node(SyntaxTree.STRING, cursor, 0);
+            listener.operand(Token.String, getLineNumber());
             match(Token.String);
         }
         else
@@ -194,156 +702,176 @@ public class NewParserModule
     }
 
     // Iffollow -> endif ; | else Blk endif ;
+    // Called by Stm() when the current block of the innermost open IF statement has
+    // ended: closes the IF statement, or starts its ELSE block and leaves it open.
     protected void Iffollow()
     {
-        if (currentToken.getId() == Token.Endif)
+        int f = ifDepth - 1;
+        node(SyntaxTree.BLOCK, SyntaxTree.NONE, pending() - ifBlock[f]);
+        if (!ifElse[f])
         {
-            match(Token.Endif);
-            match(Token.Semicolon);
-        }
-        else if (currentToken.getId() == Token.Else)
-        {
-            match(Token.Else);
-            Blk();
-            match(Token.Endif);
-            match(Token.Semicolon);
-        }
-        else
-        {
-            parseError("Incomplete if statement");
+            if (currentId == Token.Else)
+            {
+                match(Token.Else);
+                ifElse[f] = true;
+                ifBlock[f] = pending();
+                return;
+            }
+            if (currentId != Token.Endif)
+            {
+                parseError("Incomplete if statement");
+            }
         }
+        match(Token.Endif);
+        match(Token.Semicolon);
+        ifDepth--;
+        node(SyntaxTree.IF, ifToken[f], pending() - ifParts[f]);
+        listener.statementEnds(Token.If, ifLine[f]);
     }
 
-    // Exp -> Trm Trmfollow
+    // Exp -> Trm Trmfollow, with the rules for Trm, Fac, Lit and Val below it,
+    // parsed by precedence climbing: Trmfollow's + - bind loosest, then
+    // Facfollow's * /, then Litfollow's right associative **, then Lit's unary -.
+    // Operators waiting for their right operand, a unary - waiting for its Val and
+    // each open ( or SQRT( waiting for its ) are kept on an explicit stack, so the
+    // Java stack does not grow with the length or the nesting of an expression.
+    // Tokens are matched, nodes built and listener events sent in the same order
+    // as by the recursive descent methods these rules would have.
     protected void Exp()
     {
-        Trm();
-        Trmfollow();
-    }
-
-    // Trfollow -> + Trm Trfollow | - Trm Trfollow | eps
-    protected void Trmfollow()
-    {
-        if (currentToken.getId() == Token.Plus)
-        {
-            match(Token.Plus);
-            Trm();
-            Trmfollow();
-        }
-        else if (currentToken.getId() == Token.Minus)
-        {
-            match(Token.Minus);
-            Trm();
-            Trmfollow();
-        }
-        else
+        opTop = 0;
+        while (true)
         {
-            // do nothing (epsilon production)
-        }
-    }
-
-    // Trm -> Fac Facfollow
-    protected void Trm()
-    {
-        Fac();
-        Facfollow();
-    }
+            // Lit -> - Val | Val
+            if (currentId == Token.Minus)
+            {
+                push(NEGATE_MARK, cursor, getLineNumber());
+                match(Token.Minus);
+            }
+            // Val -> identifier | number | SQRT(Exp) | (Exp)
+            if (currentId == Token.Identifier)
+            {
+                node(SyntaxTree.IDENTIFIER, cursor, 0);
+                listener.operand(Token.Identifier, getLineNumber());
+                match(Token.Identifier);
+            }
+            else if (currentId == Token.Number)
+            {
+                node(SyntaxTree.NUMBER, cursor, 0);
+                listener.operand(Token.Number, getLineNumber());
+                match(Token.Number);
+            }
+            else if (currentId == Token.Sqrt)
+            {
+                int sqrt = cursor;
+                int line = getLineNumber();
+                match(Token.Sqrt);
+                match(Token.LeftParen);
+                push(SQRT_MARK, sqrt, line);
+                continue;
+            }
+            else
+            {
+                match(Token.LeftParen);
+                push(PAREN_MARK, cursor, 0);
+                continue;
+            }
 
-    // Facfollow -> * Fac Facfollow | / Fac Facfollow | eps
-    protected void Facfollow()
-    {
-        if (currentToken.getId() == Token.Multiply)
-        {
-            match(Token.Multiply);
-            Fac();
-            Facfollow();
-        }
-        else if (currentToken.getId() == Token.Divide)
-        {
-            match(Token.Divide);
-            Fac();
-            Facfollow();
-        }
-        else
-        {
-            // do nothing (epsilon production)
+            // a Val is complete: apply its unary -, then go on with an operator or close a group
+            while (true)
+            {
+                if (opTop > 0 && opId[opTop - 1] == NEGATE_MARK)
+                {
+                    opTop--;
+                    node(SyntaxTree.NEGATE, opToken[opTop], 1);
+                    listener.unaryOperator(Token.Minus, opLine[opTop]);
+                }
+                int precedence = precedence(currentId);
+                if (precedence > 0)
+                {
+                    // ** is right associative, so it does not complete an earlier **
+                    reduce(currentId == Token.Raise ? precedence + 1 : precedence);
+                    push(currentId, cursor, getLineNumber());
+                    match(currentId);
+                    break;
+                }
+                reduce(1);
+                if (opTop == 0)
+                {
+                    return;
+                }
+                // the innermost open ( or SQRT( ends here, and is a complete Val
+                match(Token.RightParen);
+                opTop--;
+                if (opId[opTop] == SQRT_MARK)
+                {
+                    node(SyntaxTree.SQRT, opToken[opTop], 1);
+                    listener.unaryOperator(Token.Sqrt, opLine[opTop]);
+                }
+            }
         }
     }
 
-    // Fac -> Lit Litfollow
-    protected void Fac()
+    // binding strength of a binary operator, 0 for other tokens
+    private static int precedence(int id)
     {
-        Lit();
-        Litfollow();
-    }
-
-    // Litfollow -> **Lit Litfollow | eps
-    protected void Litfollow()
-    {
-        if (currentToken.getId() == Token.Raise)
-        {
-            match(Token.Raise);
-            Lit();
-            Litfollow();
-        }
-        else
+        switch (id)
         {
-            // do nothing (epsilon production)
+            case Token.Plus:
+            case Token.Minus:
+                return 1;
+            case Token.Multiply:
+            case Token.Divide:
+                return 2;
+            case Token.Raise:
+                return 3;
+            default:
+                return 0;
         }
     }
 
-    // Lit -> - Val | Val
-    protected void Lit()
+    // builds the binary operators on top of the operator stack that bind at least as strongly as min
+    private void reduce(int min)
     {
-        if (currentToken.getId() == Token.Minus)
+        while (opTop > 0 && opId[opTop - 1] >= 0 && precedence(opId[opTop - 1]) >= min)
         {
-            match(Token.Minus);
-            Val();
-        }
-        else
-        {
-            Val();
+            opTop--;
+            node(SyntaxTree.BINARY, opToken[opTop], 2);
+            listener.binaryOperator(opId[opTop], opLine[opTop]);
         }
     }
 
-    // Val -> identifier | number  | SQRT(Exp) | (Exp)
-    protected void Val()
+    private void push(int id, int token, int line)
     {
-        if (currentToken.getId() == Token.Identifier)
-        {
-            match(Token.Identifier);
-        }
-        else if (currentToken.getId() == Token.Number)
-        {
-            match(Token.Number);
-        }
-        else if (currentToken.getId() == Token.Sqrt)
-        {
-            match(Token.Sqrt);
-            match(Token.LeftParen);
-            Exp();
-            match(Token.RightParen);
-        }
-        else
+        if (opTop == opId.length)
         {
-            match(Token.LeftParen);
-            Exp();
-            match(Token.RightParen);
+            opId = Arrays.copyOf(opId, opTop * 2);
+            opToken = Arrays.copyOf(opToken, opTop * 2);
+            opLine = Arrays.copyOf(opLine, opTop * 2);
         }
+        opId[opTop] = id;
+        opToken[opTop] = token;
+        opLine[opTop] = line;
+        opTop++;
     }
 
     // Cnd -> Exp Rel Exp
     protected void Cnd()
     {
         Exp();
+        int operator = cursor;
+        int relation = currentId;
+        int line = getLineNumber();
         Rel();
         Exp();
+        node(SyntaxTree.CONDITION, operator, 2);
+        listener.condition(relation, line);
     }
 
     // Rel -> < | = | > | <= | != | >= | And | Or
     protected void Rel()
     {
-        switch(currentToken.getId())
+        switch(currentId)
         {
             case Token.LessThan:
                match(Token.LessThan);
@@ -1,3 +1,6 @@
+import java.io.File;
+import java.io.IOException;
+
 /**
  * NewParserTester class that tests the NewParserModule class by creating
  * a NewParserModule object and calling its parse() method
@@ -10,21 +13,64 @@ public class NewParserTester
     /**
      * Driver method that creates a NewParserModule object and calls the parse() method
      *
-     * @param args optional command line string argument (args[0]) to specify name of text file
+     * @param args optional command line string argument (args[0]) to specify name of text file,
+     *             followed by -packed to scan the whole file into a PackedTokenBuffer before parsing,
+     *             or -parallel to do so with a ParallelScanner, or -lookahead to read the tokens
+     *             through a LookaheadTokenSource, or -tree to also print
+     *             the abstract syntax tree of a valid program, or -cache followed by a directory
+     *             to reuse the result of an earlier run on the same content, in which case
+     *             only the errors are printed and not the statements recognized
      */
-    public static void main(String[] args)
+    public static void main(String[] args) throws IOException
     {
         String fileName = "sample3.txt";
         if (args.length >= 1)
         {
             fileName = args[0];
         }
-        NewParserModule pm = new NewParserModule(fileName);
+        NewParserModule pm;
+        if (args.length >= 2 && args[1].equals("-packed"))
+        {
+            PackedTokenBuffer tokens = new PackedTokenBuffer();
+            new ScannerModule(fileName).getTokens(tokens);
+            pm = new NewParserModule(tokens);
+        }
+        else if (args.length >= 2 && args[1].equals("-parallel"))
+        {
+            pm = new NewParserModule(new ParallelScanner(fileName).scan());
+        }
+        else if (args.length >= 2 && args[1].equals("-lookahead"))
+        {
+            pm = new NewParserModule(new LookaheadTokenSource(new ScannerModule(fileName), 256));
+        }
+        else
+        {
+            pm = new NewParserModule(fileName);
+            if (args.length >= 3 && args[1].equals("-cache"))
+            {
+                pm.setCache(new ValidationCache(new File(args[2])));
+            }
+        }
+        pm.setParseListener(new TextParseListener(System.out));
+        if (args.length >= 2 && args[1].equals("-tree"))
+        {
+            SyntaxTree tree = pm.parseTree();
+            if (tree != null)
+            {
+                System.out.println(fileName +" is a valid SimpCalc program");
+                System.out.println(tree);
+            }
+            return;
+        }
         boolean valid = pm.parse();
         if (valid)
         {
            System.out.println(fileName +" is a valid SimpCalc program");
         }
+        else
+        {
+           System.out.println(fileName +" has " + pm.getDiagnostics().size() + " parse error(s)");
+        }
     }
 
 }
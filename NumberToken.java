@@ -0,0 +1,34 @@
+/**
+ * NumberToken is a Number token that carries its value, decoded by the
+ * ScannerModule when it scanned the token, besides its lexeme.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class NumberToken extends SliceToken
+{
+    private final double value;
+
+    /**
+     * Constructor for NumberToken objects
+     *
+     * @param source array holding the lexeme
+     * @param offset index of the lexeme in source
+     * @param length length of the lexeme
+     * @param value  value of the number
+     */
+    public NumberToken(char[] source, int offset, int length, double value)
+    {
+        super(Number, source, offset, length);
+        this.value = value;
+    }
+
+    /**
+     * Accessor method for the value of the number
+     * @return value decoded at scan time
+     */
+    public double getValue()
+    {
+        return value;
+    }
+}
@@ -0,0 +1,432 @@
+import java.util.Arrays;
+
+/**
+ * PackedTokenBuffer stores a token stream in primitive arrays instead of one
+ * Token object per token.  Each token takes SLOTS consecutive ints: its id,
+ * the start and length of its lexeme, and its line number.  The characters
+ * of identifiers, numbers and strings are kept in a shared char array; the
+ * lexemes of all other tokens are implied by their id.  Lexeme strings and
+ * Token objects are only created when asked for.
+ *
+ * ScannerModule.getTokens() fills a buffer; NewParserModule can parse one
+ * directly through an index cursor.  A scanner given a SymbolTable also
+ * stores the symbol of every identifier, so later stages index variables
+ * by symbol(i) instead of interning their lexemes again.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class PackedTokenBuffer
+{
+    // layout of the int slots of one token
+    public static final int SLOTS  = 4;
+    public static final int ID     = 0;
+    public static final int START  = 1;
+    public static final int LENGTH = 2;
+    public static final int LINE   = 3;
+
+    private int[] tokens;
+    private int size = 0;
+    private char[] text;
+    private int textSize = 0;
+    private double[] values;   // values of Number tokens decoded by the scanner, NaN where not known; null until one is added
+    private int[] symbols;     // symbols of Identifier tokens in symbolTable, -1 where not known; null until one is set
+    private SymbolTable symbolTable;
+
+    /**
+     * Constructor for PackedTokenBuffer objects with a default initial capacity
+     */
+    public PackedTokenBuffer()
+    {
+        this(1024);
+    }
+
+    /**
+     * Constructor for PackedTokenBuffer objects
+     *
+     * @param capacity number of tokens the buffer holds before it has to grow
+     */
+    public PackedTokenBuffer(int capacity)
+    {
+        tokens = new int[Math.max(capacity, 16) * SLOTS];
+        text = new char[Math.max(capacity, 16) * 4];
+    }
+
+    /**
+     * Appends a token whose lexeme is implied by its id (or empty)
+     *
+     * @param id    token id
+     * @param line  line number of the token
+     */
+    public void add(int id, int line)
+    {
+        int slot = reserve();
+        tokens[slot + ID] = id;
+        tokens[slot + START] = textSize;
+        tokens[slot + LENGTH] = 0;
+        tokens[slot + LINE] = line;
+    }
+
+    /**
+     * Appends a token and copies its lexeme from source[start, start + length)
+     *
+     * @param id     token id
+     * @param source array holding the lexeme
+     * @param start  index of the lexeme in source
+     * @param length length of the lexeme
+     * @param line   line number of the token
+     */
+    public void add(int id, char[] source, int start, int length, int line)
+    {
+        if (textSize + length > text.length)
+        {
+            ensureCapacity(size, textSize + length);
+        }
+        System.arraycopy(source, start, text, textSize, length);
+        int slot = reserve();
+        tokens[slot + ID] = id;
+        tokens[slot + START] = textSize;
+        tokens[slot + LENGTH] = length;
+        tokens[slot + LINE] = line;
+        textSize += length;
+    }
+
+    /**
+     * Appends a Number token with its value and copies its lexeme from source[start, start + length)
+     *
+     * @param id     token id
+     * @param source array holding the lexeme
+     * @param start  index of the lexeme in source
+     * @param length length of the lexeme
+     * @param line   line number of the token
+     * @param value  value of the number
+     */
+    public void add(int id, char[] source, int start, int length, int line, double value)
+    {
+        add(id, source, start, length, line);
+        values()[size - 1] = value;
+    }
+
+    /**
+     * Appends a token and copies its lexeme from a string, or from the
+     * characters of a SliceToken
+     *
+     * @param id     token id
+     * @param lexeme token lexeme
+     * @param line   line number of the token
+     */
+    public void add(int id, CharSequence lexeme, int line)
+    {
+        int length = lexeme.length();
+        if (Token.fixed(id) != null || length == 0)
+        {
+            add(id, line);
+            return;
+        }
+        if (textSize + length > text.length)
+        {
+            ensureCapacity(size, textSize + length);
+        }
+        if (lexeme instanceof SliceToken)
+        {
+            ((SliceToken) lexeme).getChars(text, textSize);
+        }
+        else
+        {
+            lexeme.toString().getChars(0, length, text, textSize);
+        }
+        int slot = reserve();
+        tokens[slot + ID] = id;
+        tokens[slot + START] = textSize;
+        tokens[slot + LENGTH] = length;
+        tokens[slot + LINE] = line;
+        textSize += length;
+    }
+
+    /**
+     * Appends a Number token with its value and copies its lexeme from a
+     * string, or from the characters of a SliceToken
+     *
+     * @param id     token id
+     * @param lexeme token lexeme
+     * @param line   line number of the token
+     * @param value  value of the number
+     */
+    public void add(int id, CharSequence lexeme, int line, double value)
+    {
+        add(id, lexeme, line);
+        values()[size - 1] = value;
+    }
+
+    /**
+     * Sets the table the symbols of this buffer's identifiers belong to
+     *
+     * @param symbolTable table that setSymbol() symbols are interned in
+     */
+    public void setSymbolTable(SymbolTable symbolTable)
+    {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Accessor method for the table of the identifiers' symbols
+     * @return table the symbols of symbol(i) belong to, or null if none was set
+     */
+    public SymbolTable symbolTable()
+    {
+        return symbolTable;
+    }
+
+    /**
+     * Sets the symbol of an Identifier token
+     *
+     * @param i      index of the token
+     * @param symbol symbol of its lexeme in symbolTable()
+     */
+    public void setSymbol(int i, int symbol)
+    {
+        symbols()[i] = symbol;
+    }
+
+    /**
+     * Appends the first count tokens of another buffer, shifting their line
+     * numbers by lineOffset.  Used to stitch together separately scanned
+     * chunks of one file.  Symbols are copied only if both buffers use the
+     * same SymbolTable.
+     *
+     * @param other      buffer to copy tokens from
+     * @param count      number of tokens to copy
+     * @param lineOffset number of lines before the other buffer's first line
+     */
+    public void append(PackedTokenBuffer other, int count, int lineOffset)
+    {
+        int textLength = count == 0 ? 0 : other.start(count - 1) + other.length(count - 1);
+        ensureCapacity(size + count, textSize + textLength);
+        System.arraycopy(other.text, 0, text, textSize, textLength);
+        int slot = size * SLOTS;
+        for (int i = 0; i < count * SLOTS; i += SLOTS, slot += SLOTS)
+        {
+            tokens[slot + ID] = other.tokens[i + ID];
+            tokens[slot + START] = other.tokens[i + START] + textSize;
+            tokens[slot + LENGTH] = other.tokens[i + LENGTH];
+            tokens[slot + LINE] = other.tokens[i + LINE] + lineOffset;
+        }
+        if (other.values != null)
+        {
+            System.arraycopy(other.values, 0, values(), size, count);
+        }
+        if (other.symbols != null && other.symbolTable == symbolTable)
+        {
+            System.arraycopy(other.symbols, 0, symbols(), size, count);
+        }
+        size += count;
+        textSize += textLength;
+    }
+
+    /**
+     * Grows the arrays, if needed, to hold the given number of tokens and lexeme characters
+     *
+     * @param tokenCount number of tokens
+     * @param textLength number of lexeme characters
+     */
+    public void ensureCapacity(int tokenCount, int textLength)
+    {
+        if (tokenCount * SLOTS > tokens.length)
+        {
+            int[] grown = new int[Math.max(tokens.length * 2, tokenCount * SLOTS)];
+            System.arraycopy(tokens, 0, grown, 0, size * SLOTS);
+            tokens = grown;
+            if (values != null)
+            {
+                int known = values.length;
+                values = Arrays.copyOf(values, tokens.length / SLOTS);
+                Arrays.fill(values, known, values.length, Double.NaN);
+            }
+            if (symbols != null)
+            {
+                int known = symbols.length;
+                symbols = Arrays.copyOf(symbols, tokens.length / SLOTS);
+                Arrays.fill(symbols, known, symbols.length, -1);
+            }
+        }
+        if (textLength > text.length)
+        {
+            char[] grown = new char[Math.max(text.length * 2, textLength)];
+            System.arraycopy(text, 0, grown, 0, textSize);
+            text = grown;
+        }
+    }
+
+    // the values array, allocated on first use with every value unknown
+    private double[] values()
+    {
+        if (values == null)
+        {
+            values = new double[tokens.length / SLOTS];
+            Arrays.fill(values, Double.NaN);
+        }
+        return values;
+    }
+
+    // the symbols array, allocated on first use with every symbol unknown
+    private int[] symbols()
+    {
+        if (symbols == null)
+        {
+            symbols = new int[tokens.length / SLOTS];
+            Arrays.fill(symbols, -1);
+        }
+        return symbols;
+    }
+
+    private int reserve()
+    {
+        int slot = size * SLOTS;
+        if (slot == tokens.length)
+        {
+            ensureCapacity(size + 1, textSize);
+        }
+        size++;
+        return slot;
+    }
+
+    /**
+     * Removes all tokens, keeping the arrays for reuse
+     */
+    public void clear()
+    {
+        if (values != null)
+        {
+            Arrays.fill(values, 0, size, Double.NaN);
+        }
+        if (symbols != null)
+        {
+            Arrays.fill(symbols, 0, size, -1);
+        }
+        size = 0;
+        textSize = 0;
+    }
+
+    /**
+     * Accessor method for the number of tokens
+     * @return number of tokens in the buffer
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Accessor method for a token id
+     * @param i index of the token
+     * @return token id
+     */
+    public int id(int i)
+    {
+        return tokens[i * SLOTS + ID];
+    }
+
+    /**
+     * Accessor method for a token's line number
+     * @param i index of the token
+     * @return line number reported by the scanner for the token
+     */
+    public int line(int i)
+    {
+        return tokens[i * SLOTS + LINE];
+    }
+
+    /**
+     * Accessor method for the start of a token's lexeme in text()
+     * @param i index of the token
+     * @return start index of the lexeme
+     */
+    public int start(int i)
+    {
+        return tokens[i * SLOTS + START];
+    }
+
+    /**
+     * Accessor method for the length of a token's lexeme in text().
+     * Zero for tokens whose lexeme is implied by their id.
+     * @param i index of the token
+     * @return number of characters of the lexeme stored in text()
+     */
+    public int length(int i)
+    {
+        return tokens[i * SLOTS + LENGTH];
+    }
+
+    /**
+     * Accessor method for the array holding the lexemes of identifiers,
+     * numbers and strings
+     * @return shared lexeme characters
+     */
+    public char[] text()
+    {
+        return text;
+    }
+
+    /**
+     * Accessor method for the number of lexeme characters in use
+     * @return number of characters of text() holding lexemes
+     */
+    public int textLength()
+    {
+        return textSize;
+    }
+
+    /**
+     * Accessor method for the value of a Number token
+     * @param i index of the token
+     * @return value decoded when the token was scanned, or decoded now from its lexeme
+     */
+    public double value(int i)
+    {
+        if (values != null && !Double.isNaN(values[i]))
+        {
+            return values[i];
+        }
+        return ScannerModule.decodeNumber(text, start(i), length(i));
+    }
+
+    /**
+     * Accessor method for the symbol of an Identifier token
+     * @param i index of the token
+     * @return symbol of its lexeme in symbolTable(), or -1 if the scanner did not intern it
+     */
+    public int symbol(int i)
+    {
+        return symbols == null ? -1 : symbols[i];
+    }
+
+    /**
+     * Materialises a token's lexeme
+     * @param i index of the token
+     * @return token lexeme
+     */
+    public String lexeme(int i)
+    {
+        Token fixed = Token.fixed(id(i));
+        if (fixed != null)
+        {
+            return fixed.getLexeme();
+        }
+        return new String(text, start(i), length(i));
+    }
+
+    /**
+     * Materialises a token as a Token object
+     * @param i index of the token
+     * @return token at index i
+     */
+    public Token token(int i)
+    {
+        Token fixed = Token.fixed(id(i));
+        if (fixed != null)
+        {
+            return fixed;
+        }
+        return new Token(id(i), lexeme(i));
+    }
+}
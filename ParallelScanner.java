@@ -0,0 +1,211 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelScanner tokenizes a large SimpCalc file on a ForkJoinPool.  No token
+ * spans a line (strings and comments end at the end of the line), so the
+ * scanner's state starts afresh on every line.  The file is therefore split
+ * into chunks that end at line feeds, each chunk is scanned by its own
+ * ScannerModule into its own PackedTokenBuffer, and the buffers are stitched
+ * together in order with their line numbers shifted by the number of lines
+ * in the chunks before them.  The result is the same token stream that a
+ * single ScannerModule produces.  The chunk scanners do not report to
+ * ValidationMetrics; the file is reported once, as one scan, when stitched.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class ParallelScanner
+{
+    private static final long MIN_CHUNK_SIZE = 1 << 20;   // bytes
+
+    private File textFile;
+    private ForkJoinPool pool;
+    private long chunkSize;
+
+    /**
+     * Constructor for ParallelScanner objects that use the common pool and
+     * split the file into a few chunks per worker thread
+     *
+     * @param fileName name of text file
+     */
+    public ParallelScanner(String fileName)
+    {
+        this(fileName, ForkJoinPool.commonPool(), 0);
+    }
+
+    /**
+     * Constructor for ParallelScanner objects
+     *
+     * @param fileName name of text file
+     * @param pool pool the chunks are scanned on
+     * @param chunkSize approximate number of bytes per chunk, or 0 to choose one from the pool's parallelism
+     */
+    public ParallelScanner(String fileName, ForkJoinPool pool, long chunkSize)
+    {
+        this.textFile = new File(fileName);
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Scans the whole file
+     *
+     * @return all tokens of the file, ending with EndOfFile
+     */
+    public PackedTokenBuffer scan()
+    {
+        ScanEvent event = new ScanEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<Long> bounds;
+        try
+        {
+            bounds = chunkBounds();
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        List<ChunkTask> tasks = new ArrayList<ChunkTask>();
+        for (int i = 0; i + 1 < bounds.size(); i++)
+        {
+            tasks.add(new ChunkTask(bounds.get(i), bounds.get(i + 1)));
+        }
+        for (ChunkTask task : tasks)
+        {
+            pool.execute(task);
+        }
+
+        List<PackedTokenBuffer> chunks = new ArrayList<PackedTokenBuffer>();
+        int tokenCount = 0;
+        int textLength = 0;
+        int commentLines = 0;
+        for (ChunkTask task : tasks)
+        {
+            PackedTokenBuffer chunk = task.join();
+            chunks.add(chunk);
+            tokenCount += chunk.size();
+            textLength += chunk.textLength();
+            commentLines += task.commentLines;
+        }
+
+        PackedTokenBuffer tokens = new PackedTokenBuffer(tokenCount);
+        tokens.ensureCapacity(tokenCount, textLength);
+        int lineOffset = 0;
+        for (int i = 0; i < chunks.size(); i++)
+        {
+            PackedTokenBuffer chunk = chunks.get(i);
+            boolean last = (i == chunks.size() - 1);
+            // every chunk ends with EndOfFile; only the last one is kept
+            tokens.append(chunk, last ? chunk.size() : chunk.size() - 1, lineOffset);
+            lineOffset += chunk.line(chunk.size() - 1);
+        }
+
+        int[] tokenCounts = new int[Token.tokenNames.length];
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            tokenCounts[tokens.id(i)]++;
+        }
+        ScannerModule.report(event, textFile.getPath(), System.nanoTime() - start,
+                             tokens.line(tokens.size() - 1), commentLines, tokenCounts);
+        return tokens;
+    }
+
+    /**
+     * Splits the file into chunks that each start at the beginning of a line.
+     * Only done for charsets in which a line feed byte is always a line feed;
+     * otherwise the whole file is one chunk.
+     *
+     * @return file positions of the chunk boundaries, starting with 0 and ending with the file size
+     */
+    private List<Long> chunkBounds() throws IOException
+    {
+        List<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        FileChannel channel = FileChannel.open(textFile.toPath(), StandardOpenOption.READ);
+        try
+        {
+            long size = channel.size();
+            long step = chunkSize > 0 ? chunkSize
+                                      : Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4L));
+            Charset charset = Charset.defaultCharset();
+            boolean splittable = charset.equals(StandardCharsets.UTF_8)
+                                 || charset.newEncoder().maxBytesPerChar() == 1.0f;
+            long position = step;
+            while (splittable && position < size)
+            {
+                // move the boundary just past the next line feed
+                long length = Math.min(MIN_CHUNK_SIZE, size - position);
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int i = 0;
+                while (i < length && bytes.get(i) != '\n')
+                {
+                    i++;
+                }
+                if (i == length)
+                {
+                    position += length;    // very long line: keep looking
+                    continue;
+                }
+                position += i + 1;
+                if (position < size)
+                {
+                    bounds.add(position);
+                }
+                position += step;
+            }
+            bounds.add(size);
+        } finally
+        {
+            channel.close();
+        }
+        return bounds;
+    }
+
+    /**
+     * Scans one chunk with its own ScannerModule
+     */
+    private class ChunkTask extends RecursiveTask<PackedTokenBuffer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long start;
+        private long end;
+        private int commentLines;    // comments skipped in the chunk, set by compute()
+
+        ChunkTask(long start, long end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        protected PackedTokenBuffer compute()
+        {
+            MappedLineSource input;
+            try
+            {
+                input = new MappedLineSource(textFile, start, end);
+            } catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            PackedTokenBuffer tokens = new PackedTokenBuffer((int) Math.min(end - start, 1 << 20) / 4);
+            ScannerModule scanner = new ScannerModule(input);
+            scanner.setReportingEnabled(false);
+            scanner.getTokens(tokens);
+            commentLines = scanner.getCommentLines();
+            input.close();
+            return tokens;
+        }
+    }
+}
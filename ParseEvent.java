@@ -0,0 +1,36 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ParseEvent is the JDK Flight Recorder event NewParserModule.parse()
+ * commits for every parse.  Its duration is that of the parse, including
+ * any scanning the parser pulls tokens through.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+@Name("SimpCalc.Parse")
+@Label("SimpCalc Parse")
+@Category("SimpCalc")
+@StackTrace(false)
+@Description("Parsing of one SimpCalc program")
+public class ParseEvent extends Event
+{
+    @Label("Source")
+    @Description("File parsed, or null when the tokens came from elsewhere")
+    String source;
+
+    @Label("Valid")
+    boolean valid;
+
+    @Label("Errors")
+    int errors;
+
+    @Label("Cached")
+    @Description("Result taken from a ValidationCache without scanning or parsing")
+    boolean cached;
+}
@@ -0,0 +1,97 @@
+/**
+ * ParseListener receives the events of a NewParserModule parse, SAX style,
+ * so the grammar methods themselves do no I/O.  Expression events arrive in
+ * postfix order: the operands of an operator are reported before it.  Every
+ * method does nothing by default, so a listener only implements the events
+ * it needs; NONE is the listener of a parser that was not given one.
+ *
+ * Token ids are the Token constants; lines are the scanner's line numbers.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public interface ParseListener
+{
+    /** Listener that ignores all events */
+    ParseListener NONE = new ParseListener()
+    {
+    };
+
+    /**
+     * Called when a statement starts
+     *
+     * @param kind Token.Identifier for an assignment, Token.Print or Token.If
+     * @param line line of the statement's first token
+     */
+    default void statementBegins(int kind, int line)
+    {
+    }
+
+    /**
+     * Called when a statement has been parsed, including its semicolon
+     *
+     * @param kind Token.Identifier for an assignment, Token.Print or Token.If
+     * @param line line of the statement's first token
+     */
+    default void statementEnds(int kind, int line)
+    {
+    }
+
+    /**
+     * Called for an identifier, number or string in an expression or PRINT argument list
+     *
+     * @param id   token id of the operand
+     * @param line line of the operand
+     */
+    default void operand(int id, int line)
+    {
+    }
+
+    /**
+     * Called after the operand of a unary minus or SQRT
+     *
+     * @param id   Token.Minus or Token.Sqrt
+     * @param line line of the operator
+     */
+    default void unaryOperator(int id, int line)
+    {
+    }
+
+    /**
+     * Called after both operands of +, -, *, / or **
+     *
+     * @param id   token id of the operator
+     * @param line line of the operator
+     */
+    default void binaryOperator(int id, int line)
+    {
+    }
+
+    /**
+     * Called after both sides of the condition of an IF statement
+     *
+     * @param id   token id of the relational operator, AND or OR
+     * @param line line of the operator
+     */
+    default void condition(int id, int line)
+    {
+    }
+
+    /**
+     * Called for every parse error, before the parser recovers from it
+     *
+     * @param diagnostic the error
+     */
+    default void error(Diagnostic diagnostic)
+    {
+    }
+
+    /**
+     * Called once the end of the input has been reached
+     *
+     * @param valid true if no errors were found
+     */
+    default void parseEnds(boolean valid)
+    {
+    }
+}
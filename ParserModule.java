@@ -1,3 +1,6 @@
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * ParserModule parses a SimpCalc program and determines if it follows
  * syntax rules.  Requires the Token class and ScannerModule class.
@@ -12,6 +15,9 @@ public class ParserModule
     protected ScannerModule sm;           // the scanner module object from which getToken() is repeatedly called
     protected Token currentToken = null;  // current token being processed
     protected boolean errorFlag = false;  // set to true when an error occurs
+    protected List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();  // errors of the last parse
+    protected int errorLine;              // line of the last error, for recover()
+    protected int ifDepth = 0;            // number of IF statements whose ENDIF is still to come
         
     /**
      * Constructor for ParserModule objects.  Prepares the parsing activity
@@ -49,7 +55,6 @@ public class ParserModule
         else
         {
             parseError(Token.tokenNames[tokenId]+" expected.");
-            System.out.println(Token.tokenNames[currentToken.getId()]+", but expected "+Token.tokenNames[tokenId]);
         }
     }
 
@@ -58,29 +63,136 @@ public class ParserModule
      * The first token is read and the subroutine for the start symbol of the grammar (Prg)
      * is called, initiating a recursive descent parse.
      *
+     * Parse errors do not stop the parse; each one is printed, recorded in
+     * getDiagnostics() and followed by error recovery.
+     *
      * @return true if no errors were encountered during the parse, false otherwise.
      */       
     public boolean parse()
     {
         errorFlag = false;
+        diagnostics.clear();
+        ifDepth = 0;
         getNextToken();
         Prg();
         return !errorFlag;
     }
+
+    /**
+     * Accessor method for the errors found by the last parse
+     * @return parse errors in the order they were found, empty if the program is valid
+     */
+    public List<Diagnostic> getDiagnostics()
+    {
+        return diagnostics;
+    }
     
     /**
-     * Called whenever a parse error is encountered.  Normally, for more elegant error recovery,
-     * control is brought back to the parser so it can validate next constructs.
-     * But for this assignment, we just abort.
+     * Called whenever a parse error is encountered.  Records and prints the error,
+     * then abandons the current statement by throwing Resync, which Blk() and Prg()
+     * catch to call recover() so the parser can validate the constructs that follow.
      *
      * @param errMessage string containing error message
      */       
     protected void parseError(String errMessage)
     {
             errorFlag = true;
-            System.out.println("Parse Error: " + errMessage + " (line #" + sm.getLineNumber() + ")");
-            System.exit(0);
+            errorLine = sm.getLineNumber();
+            Diagnostic diagnostic = new Diagnostic(errorLine, errMessage);
+            diagnostics.add(diagnostic);
+            System.out.println(diagnostic);
+            throw RESYNC;
+    }
+
+    /**
+     * Panic-mode error recovery: skips tokens up to a point where a statement
+     * can be parsed again.  Stops after a semicolon, or before PRINT, IF, the
+     * end of file or an identifier on a later line than the error.  ELSE and
+     * ENDIF end the skipping too; they are left for the enclosing IF statement
+     * if there is one, and dropped (with an ENDIF's semicolon) otherwise.
+     */
+    protected void recover()
+    {
+        while (true)
+        {
+            switch (currentToken.getId())
+            {
+                case Token.Semicolon:
+                    getNextToken();
+                    return;
+                case Token.Print:
+                case Token.If:
+                case Token.EndOfFile:
+                    return;
+                case Token.Else:
+                case Token.Endif:
+                    if (ifDepth > 0)
+                    {
+                        return;
+                    }
+                    boolean endif = currentToken.getId() == Token.Endif;
+                    getNextToken();
+                    if (endif && currentToken.getId() == Token.Semicolon)
+                    {
+                        getNextToken();
+                    }
+                    return;
+                case Token.Identifier:
+                    if (sm.getLineNumber() > errorLine)
+                    {
+                        return;
+                    }
+                    break;
+            }
+            getNextToken();
+        }
+    }
+
+    /**
+     * Recovery from an error in the condition of an IF statement: skips tokens
+     * through the colon, or up to where recover() would stop, and lets the IF
+     * statement go on with its body.
+     */
+    protected void recoverCondition()
+    {
+        while (currentToken.getId() != Token.Colon)
+        {
+            switch (currentToken.getId())
+            {
+                case Token.Semicolon:
+                case Token.Print:
+                case Token.If:
+                case Token.Else:
+                case Token.Endif:
+                case Token.EndOfFile:
+                    return;
+                case Token.Identifier:
+                    if (sm.getLineNumber() > errorLine)
+                    {
+                        return;
+                    }
+                    break;
+            }
+            getNextToken();
+        }
+        getNextToken();
+    }
+
+    /**
+     * Thrown by parseError() to unwind to the statement being parsed.  Carries
+     * no stack trace, so errors are cheap even in files with many of them.
+     */
+    protected static class Resync extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        Resync()
+        {
+            super(null, null, false, false);
+        }
     }
+
+    private static final Resync RESYNC = new Resync();
     
     /** 
      * The remaining methods constitute the recursive descent parser that corresponds to the grammar:
@@ -108,6 +220,18 @@ public class ParserModule
     protected void Prg()
     {
         Blk();
+        while (currentToken.getId() != Token.EndOfFile)
+        {
+            // a token that cannot start a statement: report it, skip ahead and go on
+            try
+            {
+                match(Token.EndOfFile);
+            } catch (Resync e)
+            {
+                recover();
+            }
+            Blk();
+        }
         match(Token.EndOfFile);
     }
     
@@ -120,7 +244,13 @@ public class ParserModule
             currentToken.getId() == Token.If
            )
         {
-            Stm();
+            try
+            {
+                Stm();
+            } catch (Resync e)
+            {
+                recover();
+            }
             Blk();
         }
         else
@@ -153,10 +283,23 @@ public class ParserModule
             case Token.If:
                match(Token.If);
                System.out.println("If Statement Begins");
-               Cnd();
-               match(Token.Colon);
-               Blk();
-               Iffollow();
+               try
+               {
+                   Cnd();
+                   match(Token.Colon);
+               } catch (Resync e)
+               {
+                   recoverCondition();
+               }
+               ifDepth++;
+               try
+               {
+                   Blk();
+                   Iffollow();
+               } finally
+               {
+                   ifDepth--;
+               }
                System.out.println("If Statement Ends");
                break;
             default:
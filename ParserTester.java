@@ -25,6 +25,10 @@ public class ParserTester
         {
            System.out.println(fileName +" is a valid SimpCalc program");
         }
+        else
+        {
+           System.out.println(fileName +" has " + pm.getDiagnostics().size() + " parse error(s)");
+        }
     }
 
 }
\ No newline at end of file
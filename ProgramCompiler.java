@@ -0,0 +1,709 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * ProgramCompiler turns the SyntaxTree of a SimpCalc program into a JVM class
+ * so that programs run many times are JIT-compiled like any other Java code.
+ * The class has one method, RunnableProgram.run(), in which every variable
+ * is a local double, IF statements are conditional branches, and SQRT and **
+ * call Math.sqrt and Math.pow.  It is loaded as a hidden class, so it can be
+ * unloaded as soon as the RunnableProgram is no longer used.
+ *
+ * The class file is written directly.  It uses class file version 49, which
+ * the JVM verifies without stack map frames, so no frame computation is
+ * needed.  Programs too large for one JVM method are not compiled; compile()
+ * returns an Interpreter for them, which behaves the same.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class ProgramCompiler
+{
+    private static final int CLASS_VERSION = 49;
+    private static final int MAX_BRANCH = 32767;   // code size up to which 16-bit branch offsets always fit
+
+    // opcodes
+    private static final int ICONST_0 = 0x03, ICONST_1 = 0x04, DCONST_0 = 0x0e, DCONST_1 = 0x0f, BIPUSH = 0x10, SIPUSH = 0x11;
+    private static final int LDC = 0x12, LDC_W = 0x13, LDC2_W = 0x14, ILOAD = 0x15, DLOAD = 0x18;
+    private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ISTORE = 0x36, DSTORE = 0x39, DASTORE = 0x52;
+    private static final int DUP = 0x59, SWAP = 0x5f;
+    private static final int DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77;
+    private static final int DCMPL = 0x97, DCMPG = 0x98;
+    private static final int IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e;
+    private static final int GOTO = 0xa7, ARETURN = 0xb0, RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+    private static final int NEW = 0xbb, NEWARRAY = 0xbc, ATHROW = 0xbf, WIDE = 0xc4;
+    private static final int T_DOUBLE = 7;
+
+    private Interpreter program;   // resolved slots and literals of the program
+    private SyntaxTree tree;
+
+    // constant pool
+    private ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private DataOutputStream pool = new DataOutputStream(poolBytes);
+    private HashMap<String, Integer> poolIndex = new HashMap<String, Integer>();
+    private int poolCount = 1;
+
+    // code of the method being written
+    private byte[] code = new byte[256];
+    private int length = 0;
+    private int stack = 0;
+    private int maxStack = 0;
+
+    // locals of run(): this, out, one double per variable, two double temporaries, assignment flags
+    private int[] flag;              // local holding the variable's "assigned" flag, or -1 if not needed
+    private boolean[] checked;       // IDENTIFIER nodes that may read an unassigned variable
+    private int temp;
+    private int[] pendingNodes = new int[64];   // reads() and expression(): nodes still to visit
+    private int maxLocals;
+
+    private ProgramCompiler(Interpreter program)
+    {
+        this.program = program;
+        this.tree = program.tree();
+    }
+
+    /**
+     * Compiles a program
+     *
+     * @param tree syntax tree of a valid program, as returned by NewParserModule.parseTree()
+     * @return the program as a generated class, or as an Interpreter if it is too large for one JVM method
+     */
+    public static RunnableProgram compile(SyntaxTree tree)
+    {
+        Interpreter interpreter = new Interpreter(tree);
+        byte[] classFile = new ProgramCompiler(interpreter).classFile();
+        if (classFile == null)
+        {
+            return interpreter;
+        }
+        try
+        {
+            Class<?> c = MethodHandles.lookup().defineHiddenClass(classFile, true).lookupClass();
+            return (RunnableProgram) c.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Generated class could not be loaded", e);
+        }
+    }
+
+    /**
+     * Creates the exception thrown by generated code that reads a variable before it is assigned
+     *
+     * @param name variable name
+     * @param line line number of the read
+     * @return exception to throw
+     */
+    public static IllegalStateException unassigned(String name, int line)
+    {
+        return new IllegalStateException("Variable " + name + " used before assignment (line #" + line + ")");
+    }
+
+    /**
+     * Writes the class file
+     *
+     * @return class file bytes, or null if the program exceeds the limits of a JVM method
+     */
+    private byte[] classFile()
+    {
+        int variables = program.slotCount();
+        findUncheckedReads();
+        temp = 2 + variables * 2;
+        maxLocals = temp + 4;
+        for (int s = 0; s < variables; s++)
+        {
+            flag[s] = flag[s] == 0 ? -1 : maxLocals++;
+        }
+        if (maxLocals > 0xffff)
+        {
+            return null;
+        }
+
+        try
+        {
+            int thisClass = classRef("SimpCalcProgram");
+            int superClass = classRef("java/lang/Object");
+            int runnable = classRef("RunnableProgram");
+            int init = utf8("<init>");
+            int run = utf8("run");
+            int codeAttribute = utf8("Code");
+
+            ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+            DataOutputStream methods = new DataOutputStream(methodBytes);
+            // public SimpCalcProgram() { super(); }
+            startMethod();
+            op(ALOAD_0, 1);
+            op(INVOKESPECIAL, -1);
+            u2(methodRef("java/lang/Object", "<init>", "()V"));
+            op(RETURN, 0);
+            writeMethod(methods, init, utf8("()V"), codeAttribute, 1);
+            // public double[] run(PrintStream out)
+            startMethod();
+            writeRun();
+            if (length > MAX_BRANCH || poolCount > 0xfff0 || maxStack > 0xffff)
+            {
+                return null;
+            }
+            writeMethod(methods, run, utf8("(Ljava/io/PrintStream;)[D"), codeAttribute, maxLocals);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(0x0031);    // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(runnable);
+            out.writeShort(0);         // fields
+            out.writeShort(2);
+            methodBytes.writeTo(out);
+            out.writeShort(0);         // attributes
+            return bytes.toByteArray();
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeMethod(DataOutputStream methods, int name, int descriptor, int codeAttribute, int locals)
+        throws IOException
+    {
+        methods.writeShort(0x0001);    // public
+        methods.writeShort(name);
+        methods.writeShort(descriptor);
+        methods.writeShort(1);
+        methods.writeShort(codeAttribute);
+        methods.writeInt(12 + length);
+        methods.writeShort(maxStack);
+        methods.writeShort(locals);
+        methods.writeInt(length);
+        methods.write(code, 0, length);
+        methods.writeShort(0);         // exception table
+        methods.writeShort(0);         // attributes
+    }
+
+    /**
+     * Marks the reads of variables that are not assigned on every path
+     * leading to them; only those need a run-time check, and only their
+     * variables need an "assigned" flag (counted in flag[] until classFile()
+     * turns the counts into local numbers).
+     */
+    private void findUncheckedReads()
+    {
+        checked = new boolean[tree.size()];
+        flag = new int[program.slotCount()];
+        boolean[] assigned = new boolean[program.slotCount()];
+        statements(tree.root(), assigned);
+    }
+
+    private void statements(int block, boolean[] assigned)
+    {
+        for (int n = tree.firstChild(block); n != SyntaxTree.NONE; n = tree.nextSibling(n))
+        {
+            switch (tree.kind(n))
+            {
+                case SyntaxTree.ASSIGN:
+                    reads(tree.firstChild(n), assigned);
+                    assigned[program.slotOf(n)] = true;
+                    break;
+                case SyntaxTree.PRINT:
+                    for (int arg = tree.firstChild(n); arg != SyntaxTree.NONE; arg = tree.nextSibling(arg))
+                    {
+                        reads(arg, assigned);
+                    }
+                    break;
+                case SyntaxTree.IF:
+                    int condition = tree.firstChild(n);
+                    reads(condition, assigned);
+                    int then = tree.nextSibling(condition);
+                    boolean[] thenAssigned = assigned.clone();
+                    statements(then, thenAssigned);
+                    if (tree.nextSibling(then) != SyntaxTree.NONE)
+                    {
+                        boolean[] elseAssigned = assigned.clone();
+                        statements(tree.nextSibling(then), elseAssigned);
+                        for (int s = 0; s < assigned.length; s++)
+                        {
+                            assigned[s] = thenAssigned[s] && elseAssigned[s];
+                        }
+                    }
+                    break;
+            }
+        }
+    }
+
+    // marks the unchecked reads in an expression, walking it with an explicit stack
+    private void reads(int root, boolean[] assigned)
+    {
+        int top = 0;
+        pendingNodes[top++] = root;
+        while (top > 0)
+        {
+            int n = pendingNodes[--top];
+            if (tree.kind(n) == SyntaxTree.IDENTIFIER && !assigned[program.slotOf(n)])
+            {
+                checked[n] = true;
+                flag[program.slotOf(n)]++;
+            }
+            for (int child = tree.firstChild(n); child != SyntaxTree.NONE; child = tree.nextSibling(child))
+            {
+                if (top == pendingNodes.length)
+                {
+                    pendingNodes = Arrays.copyOf(pendingNodes, pendingNodes.length * 2);
+                }
+                pendingNodes[top++] = child;
+            }
+        }
+    }
+
+    private void writeRun() throws IOException
+    {
+        int variables = program.slotCount();
+        for (int s = 0; s < variables; s++)
+        {
+            ldc2(Double.NaN);
+            local(DSTORE, variable(s), -2);
+            if (flag[s] >= 0)
+            {
+                op(ICONST_0, 1);
+                local(ISTORE, flag[s], -1);
+            }
+        }
+        statements(tree.root());
+        pushInt(variables);
+        op(NEWARRAY, 0);
+        u1(T_DOUBLE);
+        for (int s = 0; s < variables; s++)
+        {
+            op(DUP, 1);
+            pushInt(s);
+            local(DLOAD, variable(s), 2);
+            op(DASTORE, -4);
+        }
+        op(ARETURN, -1);
+    }
+
+    private int variable(int s)
+    {
+        return 2 + s * 2;
+    }
+
+    private void statements(int block) throws IOException
+    {
+        for (int n = tree.firstChild(block); n != SyntaxTree.NONE; n = tree.nextSibling(n))
+        {
+            switch (tree.kind(n))
+            {
+                case SyntaxTree.ASSIGN:
+                    int s = program.slotOf(n);
+                    expression(tree.firstChild(n));
+                    local(DSTORE, variable(s), -2);
+                    if (flag[s] >= 0)
+                    {
+                        op(ICONST_1, 1);
+                        local(ISTORE, flag[s], -1);
+                    }
+                    break;
+                case SyntaxTree.PRINT:
+                    print(n);
+                    break;
+                case SyntaxTree.IF:
+                    int condition = tree.firstChild(n);
+                    int then = tree.nextSibling(condition);
+                    int[] toElse = condition(condition);
+                    statements(then);
+                    if (tree.nextSibling(then) != SyntaxTree.NONE)
+                    {
+                        int toEnd = jump(GOTO);
+                        land(toElse);
+                        statements(tree.nextSibling(then));
+                        land(new int[] {toEnd});
+                    }
+                    else
+                    {
+                        land(toElse);
+                    }
+                    break;
+            }
+        }
+    }
+
+    // out.println(new StringBuilder().append(...)...), formatting numbers like Interpreter
+    private void print(int n) throws IOException
+    {
+        op(NEW, 1);
+        u2(classRef("java/lang/StringBuilder"));
+        op(DUP, 1);
+        op(INVOKESPECIAL, -1);
+        u2(methodRef("java/lang/StringBuilder", "<init>", "()V"));
+        int append = methodRef("java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;");
+        for (int arg = tree.firstChild(n); arg != SyntaxTree.NONE; arg = tree.nextSibling(arg))
+        {
+            String separator = arg == tree.firstChild(n) ? "" : " ";
+            if (tree.kind(arg) == SyntaxTree.STRING)
+            {
+                ldcString(separator + program.textOf(arg));
+                op(INVOKEVIRTUAL, -1);
+                u2(append);
+                continue;
+            }
+            if (separator.length() > 0)
+            {
+                ldcString(separator);
+                op(INVOKEVIRTUAL, -1);
+                u2(append);
+            }
+            op(DUP, 1);
+            expression(arg);
+            op(INVOKESTATIC, -3);
+            u2(methodRef("Interpreter", "append", "(Ljava/lang/StringBuilder;D)V"));
+        }
+        op(ALOAD_1, 1);
+        op(SWAP, 0);
+        op(INVOKEVIRTUAL, -2);
+        u2(methodRef("java/io/PrintStream", "println", "(Ljava/lang/Object;)V"));
+    }
+
+    /**
+     * Writes a condition as branches taken when it is false
+     *
+     * @return positions of the branches to the code run when the condition is false
+     */
+    private int[] condition(int n) throws IOException
+    {
+        int left = tree.firstChild(n);
+        int operator = tree.tokenId(n);
+        expression(left);
+        expression(tree.nextSibling(left));
+        switch (operator)
+        {
+            // NaN operands make every comparison but != false: dcmpg yields 1 and dcmpl yields -1 for them
+            case Token.LessThan:    op(DCMPG, -3); return new int[] {jump(IFGE)};
+            case Token.LTEqual:     op(DCMPG, -3); return new int[] {jump(IFGT)};
+            case Token.GreaterThan: op(DCMPL, -3); return new int[] {jump(IFLE)};
+            case Token.GTEqual:     op(DCMPL, -3); return new int[] {jump(IFLT)};
+            case Token.Equal:       op(DCMPL, -3); return new int[] {jump(IFNE)};
+            case Token.NotEqual:    op(DCMPL, -3); return new int[] {jump(IFEQ)};
+        }
+        // AND, OR: both operands are evaluated first, as in Interpreter
+        local(DSTORE, temp + 2, -2);
+        local(DSTORE, temp, -2);
+        local(DLOAD, temp, 2);
+        op(DCONST_0, 2);
+        op(DCMPL, -3);
+        if (operator == Token.And)
+        {
+            int first = jump(IFEQ);
+            local(DLOAD, temp + 2, 2);
+            op(DCONST_0, 2);
+            op(DCMPL, -3);
+            return new int[] {first, jump(IFEQ)};
+        }
+        int toThen = jump(IFNE);
+        local(DLOAD, temp + 2, 2);
+        op(DCONST_0, 2);
+        op(DCMPL, -3);
+        int toElse = jump(IFEQ);
+        land(new int[] {toThen});
+        return new int[] {toElse};
+    }
+
+    // writes an expression by a post-order walk with an explicit stack, as
+    // Interpreter evaluates it, so long chains of terms do not recurse per level
+    private void expression(int root) throws IOException
+    {
+        int top = 0;
+        pendingNodes[top++] = root;
+        while (top > 0)
+        {
+            int n = pendingNodes[--top];
+            if (n < 0)
+            {
+                // ~n has had its operands written
+                n = ~n;
+                switch (tree.kind(n))
+                {
+                    case SyntaxTree.NEGATE:
+                        op(DNEG, 0);
+                        break;
+                    case SyntaxTree.SQRT:
+                        op(INVOKESTATIC, 0);
+                        u2(methodRef("java/lang/Math", "sqrt", "(D)D"));
+                        break;
+                    default:    // BINARY
+                        switch (tree.tokenId(n))
+                        {
+                            case Token.Plus:     op(DADD, -2); break;
+                            case Token.Minus:    op(DSUB, -2); break;
+                            case Token.Multiply: op(DMUL, -2); break;
+                            case Token.Divide:   op(DDIV, -2); break;
+                            default:
+                                op(INVOKESTATIC, -2);
+                                u2(methodRef("java/lang/Math", "pow", "(DD)D"));
+                        }
+                }
+                continue;
+            }
+            switch (tree.kind(n))
+            {
+                case SyntaxTree.NUMBER:
+                    ldc2(program.constantOf(n));
+                    break;
+                case SyntaxTree.IDENTIFIER:
+                    int s = program.slotOf(n);
+                    if (checked[n])
+                    {
+                        local(ILOAD, flag[s], 1);
+                        int ok = jump(IFNE);
+                        ldcString(program.name(s));
+                        pushInt(tree.tokens().line(tree.token(n)));
+                        op(INVOKESTATIC, -1);
+                        u2(methodRef("ProgramCompiler", "unassigned", "(Ljava/lang/String;I)Ljava/lang/IllegalStateException;"));
+                        op(ATHROW, -1);
+                        land(new int[] {ok});
+                    }
+                    local(DLOAD, variable(s), 2);
+                    break;
+                default:    // NEGATE, SQRT or BINARY: revisit n after its operands, the left one first
+                    if (top + 3 > pendingNodes.length)
+                    {
+                        pendingNodes = Arrays.copyOf(pendingNodes, pendingNodes.length * 2);
+                    }
+                    pendingNodes[top++] = ~n;
+                    int left = tree.firstChild(n);
+                    if (tree.kind(n) == SyntaxTree.BINARY)
+                    {
+                        pendingNodes[top++] = tree.nextSibling(left);
+                    }
+                    pendingNodes[top++] = left;
+            }
+        }
+    }
+
+    // code writing
+
+    private void startMethod()
+    {
+        length = 0;
+        stack = 0;
+        maxStack = 0;
+    }
+
+    private void op(int opcode, int stackChange)
+    {
+        u1(opcode);
+        stack += stackChange;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void local(int opcode, int index, int stackChange)
+    {
+        if (index > 0xff)
+        {
+            op(WIDE, 0);
+            op(opcode, stackChange);
+            u2(index);
+        }
+        else
+        {
+            op(opcode, stackChange);
+            u1(index);
+        }
+    }
+
+    private void pushInt(int value) throws IOException
+    {
+        if (value <= 5)
+        {
+            op(ICONST_0 + value, 1);
+        }
+        else if (value <= Byte.MAX_VALUE)
+        {
+            op(BIPUSH, 1);
+            u1(value);
+        }
+        else if (value <= Short.MAX_VALUE)
+        {
+            op(SIPUSH, 1);
+            u2(value);
+        }
+        else
+        {
+            ldc(integer(value));
+        }
+    }
+
+    private void ldc2(double value) throws IOException
+    {
+        if (Double.doubleToRawLongBits(value) == 0L)
+        {
+            op(DCONST_0, 2);
+        }
+        else if (value == 1.0)
+        {
+            op(DCONST_1, 2);
+        }
+        else
+        {
+            op(LDC2_W, 2);
+            u2(doubleConstant(value));
+        }
+    }
+
+    private void ldcString(String value) throws IOException
+    {
+        ldc(string(value));
+    }
+
+    private void ldc(int index)
+    {
+        if (index > 0xff)
+        {
+            op(LDC_W, 1);
+            u2(index);
+        }
+        else
+        {
+            op(LDC, 1);
+            u1(index);
+        }
+    }
+
+    // conditional branches pop an int, GOTO pops nothing
+    private int jump(int opcode)
+    {
+        int at = length;
+        op(opcode, opcode == GOTO ? 0 : -1);
+        u2(0);
+        return at;
+    }
+
+    // points the given branches at the current position
+    private void land(int[] branches)
+    {
+        for (int at : branches)
+        {
+            int offset = length - at;
+            code[at + 1] = (byte) (offset >> 8);
+            code[at + 2] = (byte) offset;
+        }
+    }
+
+    private void u1(int value)
+    {
+        if (length == code.length)
+        {
+            code = Arrays.copyOf(code, length * 2);
+        }
+        code[length++] = (byte) value;
+    }
+
+    private void u2(int value)
+    {
+        u1(value >> 8);
+        u1(value);
+    }
+
+    // constant pool
+
+    private int utf8(String value) throws IOException
+    {
+        Integer index = poolIndex.get("U" + value);
+        if (index == null)
+        {
+            pool.writeByte(1);
+            pool.writeUTF(value);
+            index = add("U" + value, 1);
+        }
+        return index;
+    }
+
+    private int integer(int value) throws IOException
+    {
+        Integer index = poolIndex.get("I" + value);
+        if (index == null)
+        {
+            pool.writeByte(3);
+            pool.writeInt(value);
+            index = add("I" + value, 1);
+        }
+        return index;
+    }
+
+    private int doubleConstant(double value) throws IOException
+    {
+        long bits = Double.doubleToRawLongBits(value);
+        Integer index = poolIndex.get("D" + bits);
+        if (index == null)
+        {
+            pool.writeByte(6);
+            pool.writeLong(bits);
+            index = add("D" + bits, 2);    // doubles take two pool entries
+        }
+        return index;
+    }
+
+    private int classRef(String name) throws IOException
+    {
+        Integer index = poolIndex.get("C" + name);
+        if (index == null)
+        {
+            int nameIndex = utf8(name);
+            pool.writeByte(7);
+            pool.writeShort(nameIndex);
+            index = add("C" + name, 1);
+        }
+        return index;
+    }
+
+    private int string(String value) throws IOException
+    {
+        Integer index = poolIndex.get("S" + value);
+        if (index == null)
+        {
+            int valueIndex = utf8(value);
+            pool.writeByte(8);
+            pool.writeShort(valueIndex);
+            index = add("S" + value, 1);
+        }
+        return index;
+    }
+
+    private int methodRef(String owner, String name, String descriptor) throws IOException
+    {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index == null)
+        {
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            pool.writeByte(12);
+            pool.writeShort(nameIndex);
+            pool.writeShort(descriptorIndex);
+            int nameAndType = add("N" + key, 1);
+            pool.writeByte(10);
+            pool.writeShort(ownerIndex);
+            pool.writeShort(nameAndType);
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    private int add(String key, int entries)
+    {
+        int index = poolCount;
+        poolIndex.put(key, index);
+        poolCount += entries;
+        return index;
+    }
+}
@@ -0,0 +1,464 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * ProgramGenerator writes random SimpCalc programs that follow the grammar
+ * of NewParserModule, for load tests and benchmarks.  The same seed and
+ * settings always give the same program.  Programs are written one
+ * top-level statement at a time, so their size is only limited by the disk.
+ *
+ * A variable is only read after a top-level statement has assigned it, so
+ * valid programs also run in the Interpreter without errors.  When an error
+ * rate is set, that fraction of the top-level statements is made invalid by
+ * dropping its final semicolon or by putting a stray ) after its first token.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class ProgramGenerator
+{
+    private static final String[] OPERATORS = {" + ", " - ", " * ", " / ", " ** "};
+    private static final String[] RELATIONS = {" < ", " = ", " > ", " <= ", " != ", " >= ", " AND ", " OR "};
+    private static final String[] WORDS = {"result", "total", "value", "of", "the", "sum", "is", "root", "x", "done"};
+
+    private Random random;
+    private int assignWeight = 6;
+    private int printWeight = 2;
+    private int ifWeight = 2;
+    private int maxIfDepth = 3;
+    private int maxExpressionDepth = 3;
+    private double commentDensity = 0.1;
+    private double errorRate = 0;
+    private int maxVariables = 200;
+
+    private int variables;       // variables v0 .. v(variables - 1) are assigned by now
+    private long statements;
+    private long errors;
+
+    /**
+     * Constructor for ProgramGenerator objects
+     *
+     * @param seed seed of the random choices
+     */
+    public ProgramGenerator(long seed)
+    {
+        random = new Random(seed);
+    }
+
+    /**
+     * Sets the relative frequency of the three kinds of statement
+     *
+     * @param assign weight of assignments
+     * @param print  weight of PRINT statements
+     * @param ifs    weight of IF statements
+     */
+    public void setStatementMix(int assign, int print, int ifs)
+    {
+        if (assign < 0 || print < 0 || ifs < 0 || assign + print == 0)
+        {
+            throw new IllegalArgumentException("Statement weights must not be negative, and assignments or PRINT must occur");
+        }
+        assignWeight = assign;
+        printWeight = print;
+        ifWeight = ifs;
+    }
+
+    /**
+     * Sets how deeply IF statements nest
+     * @param depth maximum number of IF statements around a statement
+     */
+    public void setMaxIfDepth(int depth)
+    {
+        maxIfDepth = depth;
+    }
+
+    /**
+     * Sets how deeply expressions nest
+     * @param depth maximum number of parentheses and SQRT calls around an operand
+     */
+    public void setMaxExpressionDepth(int depth)
+    {
+        maxExpressionDepth = depth;
+    }
+
+    /**
+     * Sets how often comments appear
+     * @param density chance of a comment line before and of a comment after a top-level statement
+     */
+    public void setCommentDensity(double density)
+    {
+        commentDensity = density;
+    }
+
+    /**
+     * Sets how often top-level statements are made invalid
+     * @param rate chance of an error in a top-level statement; 0 for valid programs
+     */
+    public void setErrorRate(double rate)
+    {
+        errorRate = rate;
+    }
+
+    /**
+     * Sets the number of distinct variables
+     * @param count maximum number of variables the program assigns
+     */
+    public void setMaxVariables(int count)
+    {
+        maxVariables = Math.max(count, 1);
+    }
+
+    /**
+     * Accessor method for the number of top-level statements written
+     * @return top-level statements written so far
+     */
+    public long getStatements()
+    {
+        return statements;
+    }
+
+    /**
+     * Accessor method for the number of errors put into the program
+     * @return invalid top-level statements written so far
+     */
+    public long getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Writes top-level statements until at least size characters are written
+     *
+     * @param out  writer the program is written to
+     * @param size number of characters to write; all of them are ASCII
+     * @return number of characters written
+     */
+    public long write(Writer out, long size) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        long written = 0;
+        while (written < size)
+        {
+            sb.setLength(0);
+            if (random.nextDouble() < commentDensity)
+            {
+                comment(sb);
+                sb.append('\n');
+            }
+            int start = sb.length();
+            statement(sb, 0, 0);
+            if (random.nextDouble() < errorRate)
+            {
+                breakStatement(sb, start);
+                errors++;
+            }
+            if (random.nextDouble() < commentDensity)
+            {
+                sb.append(' ');
+                comment(sb);
+            }
+            sb.append('\n');
+            out.write(sb.toString());
+            written += sb.length();
+            statements++;
+        }
+        return written;
+    }
+
+    /**
+     * Writes a program of at least size characters to a file
+     *
+     * @param file file to write
+     * @param size number of characters to write
+     * @return number of characters written
+     */
+    public long write(File file, long size) throws IOException
+    {
+        Writer out = new BufferedWriter(new FileWriter(file), 1 << 16);
+        try
+        {
+            return write(out, size);
+        } finally
+        {
+            out.close();
+        }
+    }
+
+    private void statement(StringBuilder sb, int ifDepth, int indent)
+    {
+        indent(sb, indent);
+        int ifs = ifDepth < maxIfDepth ? ifWeight : 0;
+        int choice = random.nextInt(assignWeight + printWeight + ifs);
+        if (choice < assignWeight)
+        {
+            // nested blocks may not run, so only top-level statements add variables,
+            // and a new variable is not readable in its own assignment
+            int target = random.nextInt(Math.max(variables, 1));
+            boolean added = ifDepth == 0 && variables < maxVariables && random.nextInt(variables + 1) == variables;
+            if (added)
+            {
+                target = variables;
+            }
+            sb.append('v').append(target).append(" := ");
+            expression(sb, maxExpressionDepth);
+            sb.append(';');
+            if (added)
+            {
+                variables++;
+            }
+        }
+        else if (choice < assignWeight + printWeight)
+        {
+            sb.append("PRINT(");
+            int args = 1 + random.nextInt(4);
+            for (int i = 0; i < args; i++)
+            {
+                if (i > 0)
+                {
+                    sb.append(", ");
+                }
+                if (random.nextBoolean())
+                {
+                    sb.append('"');
+                    int words = 1 + random.nextInt(4);
+                    for (int w = 0; w < words; w++)
+                    {
+                        sb.append(w > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+                    }
+                    sb.append('"');
+                }
+                else
+                {
+                    expression(sb, maxExpressionDepth);
+                }
+            }
+            sb.append(");");
+        }
+        else
+        {
+            sb.append("IF ");
+            expression(sb, maxExpressionDepth);
+            sb.append(RELATIONS[random.nextInt(RELATIONS.length)]);
+            expression(sb, maxExpressionDepth);
+            sb.append(":\n");
+            block(sb, ifDepth + 1, indent + 1);
+            if (random.nextBoolean())
+            {
+                indent(sb, indent).append("ELSE\n");
+                block(sb, ifDepth + 1, indent + 1);
+            }
+            indent(sb, indent).append("ENDIF;");
+        }
+    }
+
+    private void block(StringBuilder sb, int ifDepth, int indent)
+    {
+        int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++)
+        {
+            statement(sb, ifDepth, indent);
+            sb.append('\n');
+        }
+    }
+
+    private static StringBuilder indent(StringBuilder sb, int indent)
+    {
+        for (int i = 0; i < indent; i++)
+        {
+            sb.append("   ");
+        }
+        return sb;
+    }
+
+    // Exp: operands joined by binary operators; an operand may be negated and
+    // may be a parenthesised expression or SQRT call while depth allows
+    private void expression(StringBuilder sb, int depth)
+    {
+        int operands = 1 + random.nextInt(3);
+        for (int i = 0; i < operands; i++)
+        {
+            if (i > 0)
+            {
+                sb.append(OPERATORS[random.nextInt(OPERATORS.length)]);
+            }
+            if (random.nextInt(6) == 0)
+            {
+                sb.append('-');
+            }
+            int kind = depth > 0 ? random.nextInt(4) : 3;
+            if (kind == 0)
+            {
+                sb.append('(');
+                expression(sb, depth - 1);
+                sb.append(')');
+            }
+            else if (kind == 1)
+            {
+                sb.append("SQRT(");
+                expression(sb, depth - 1);
+                sb.append(')');
+            }
+            else if (variables > 0 && random.nextBoolean())
+            {
+                sb.append('v').append(random.nextInt(variables));
+            }
+            else
+            {
+                number(sb);
+            }
+        }
+    }
+
+    private void number(StringBuilder sb)
+    {
+        switch (random.nextInt(6))
+        {
+            case 0:
+                sb.append(random.nextInt(10));
+                break;
+            case 1:
+                sb.append(random.nextInt(1000)).append('.').append(random.nextInt(100));
+                break;
+            case 2:
+                sb.append('.').append(random.nextInt(1000));
+                break;
+            case 3:
+                sb.append(random.nextInt(100)).append('.').append(random.nextInt(10)).append('e').append(random.nextInt(20));
+                break;
+            case 4:
+                sb.append(1 + random.nextInt(9)).append(random.nextBoolean() ? "E+" : "E-").append(random.nextInt(10));
+                break;
+            default:
+                sb.append("00").append(random.nextInt(100)).append('.').append(random.nextInt(10));
+                break;
+        }
+    }
+
+    private void comment(StringBuilder sb)
+    {
+        sb.append("//");
+        int words = 1 + random.nextInt(8);
+        for (int w = 0; w < words; w++)
+        {
+            sb.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+    }
+
+    // every statement ends with a semicolon and none may be followed by a ) after its first token
+    private void breakStatement(StringBuilder sb, int start)
+    {
+        if (random.nextBoolean())
+        {
+            sb.setLength(sb.length() - 1);
+        }
+        else
+        {
+            int end = start;
+            while (sb.charAt(end) == ' ')
+            {
+                end++;
+            }
+            while (sb.charAt(end) != ' ' && sb.charAt(end) != '(')
+            {
+                end++;
+            }
+            sb.insert(end, " )");
+        }
+    }
+
+    /**
+     * Parses a size such as 512, 64k, 10m or 20g
+     *
+     * @param s size, optionally followed by k, m or g for KiB, MiB or GiB
+     * @return size in bytes
+     */
+    public static long parseSize(String s)
+    {
+        s = s.toLowerCase();
+        long unit = 1;
+        if (s.endsWith("k"))
+        {
+            unit = 1L << 10;
+        }
+        else if (s.endsWith("m"))
+        {
+            unit = 1L << 20;
+        }
+        else if (s.endsWith("g"))
+        {
+            unit = 1L << 30;
+        }
+        if (unit > 1)
+        {
+            s = s.substring(0, s.length() - 1);
+        }
+        return Long.parseLong(s) * unit;
+    }
+
+    /**
+     * Driver method that writes a generated program
+     *
+     * @param args file name (- for standard output) and size such as 64k, 100m or 20g,
+     *             followed by options: -seed n, -mix assign,print,if (weights, default 6,2,2),
+     *             -if n (IF nesting depth, default 3), -expr n (expression nesting depth,
+     *             default 3), -comments p (comment density, default 0.1), -errors p (share of
+     *             invalid top-level statements, default 0) and -vars n (default 200)
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.out.println("Usage: java ProgramGenerator file size [-seed n] [-mix a,p,i] [-if n] [-expr n]"
+                               + " [-comments p] [-errors p] [-vars n]");
+            return;
+        }
+        long seed = 1;
+        for (int i = 2; i + 1 < args.length; i += 2)
+        {
+            if (args[i].equals("-seed"))
+            {
+                seed = Long.parseLong(args[i + 1]);
+            }
+        }
+        ProgramGenerator generator = new ProgramGenerator(seed);
+        for (int i = 2; i + 1 < args.length; i += 2)
+        {
+            switch (args[i])
+            {
+                case "-seed":
+                    break;
+                case "-mix":
+                    String[] weights = args[i + 1].split(",");
+                    generator.setStatementMix(Integer.parseInt(weights[0]), Integer.parseInt(weights[1]),
+                                              Integer.parseInt(weights[2]));
+                    break;
+                case "-if":       generator.setMaxIfDepth(Integer.parseInt(args[i + 1])); break;
+                case "-expr":     generator.setMaxExpressionDepth(Integer.parseInt(args[i + 1])); break;
+                case "-comments": generator.setCommentDensity(Double.parseDouble(args[i + 1])); break;
+                case "-errors":   generator.setErrorRate(Double.parseDouble(args[i + 1])); break;
+                case "-vars":     generator.setMaxVariables(Integer.parseInt(args[i + 1])); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        long size = parseSize(args[1]);
+        long written;
+        if (args[0].equals("-"))
+        {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+            written = generator.write(out, size);
+            out.flush();
+        }
+        else
+        {
+            written = generator.write(new File(args[0]), size);
+            System.out.printf("%s: %,d bytes, %,d top-level statements, %,d with errors%n",
+                              args[0], written, generator.getStatements(), generator.getErrors());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+import java.io.PrintStream;
+
+/**
+ * RunnableProgram is a SimpCalc program ready to be run, either by the
+ * Interpreter walking its syntax tree or as a class generated by
+ * ProgramCompiler.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public interface RunnableProgram
+{
+    /**
+     * Runs the program
+     *
+     * @param out stream PRINT statements write to
+     * @return final values of the variables, indexed by slot; NaN for variables never assigned
+     * @throws IllegalStateException if a variable is read before it is assigned
+     */
+    double[] run(PrintStream out);
+}
@@ -0,0 +1,50 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ScanEvent is the JDK Flight Recorder event a ScannerModule commits when it
+ * reaches the end of its input.  The event's duration runs from the first
+ * token to the end of the input; when a parser pulls the tokens one at a
+ * time it includes the parser's own work.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+@Name("SimpCalc.Scan")
+@Label("SimpCalc Scan")
+@Category("SimpCalc")
+@StackTrace(false)
+@Description("Scanning of one SimpCalc input")
+public class ScanEvent extends Event
+{
+    @Label("Source")
+    @Description("File scanned, or null for other line sources")
+    String source;
+
+    @Label("Lines")
+    int lines;
+
+    @Label("Comment Lines")
+    @Description("Number of // comments skipped")
+    int commentLines;
+
+    @Label("Tokens")
+    @Description("Number of tokens, including EndOfFile")
+    int tokens;
+
+    @Label("Identifiers")
+    int identifiers;
+
+    @Label("Numbers")
+    int numbers;
+
+    @Label("Strings")
+    int strings;
+
+    @Label("Error Tokens")
+    int errorTokens;
+}
@@ -0,0 +1,72 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Scanner;
+
+/**
+ * ScannerLineSource reads lines through a java.util.Scanner.  This is the
+ * original input path of the ScannerModule and remains its default.
+ * Bytes that are not valid in the platform default charset are decoded as
+ * the replacement character U+FFFD, as MappedLineSource decodes them, so
+ * both input modes see the same lines.  (A Scanner on the file itself
+ * would stop at the first such byte and report the end of the input.)
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class ScannerLineSource implements LineSource
+{
+    private Scanner input;
+    private char[] buffer = new char[256];
+    private int length = 0;
+
+    /**
+     * Constructor for ScannerLineSource objects.  Opens the file; the first
+     * line is read by the first call to nextLine()
+     *
+     * @param textFile file to be read
+     * @throws FileNotFoundException if the file cannot be opened
+     */
+    public ScannerLineSource(File textFile) throws FileNotFoundException
+    {
+        input = new Scanner(new InputStreamReader(new FileInputStream(textFile), Charset.defaultCharset()));
+    }
+
+    public boolean hasNextLine()
+    {
+        return input.hasNextLine();
+    }
+
+    public void nextLine()
+    {
+        String line = input.nextLine();
+        length = line.length();
+        if (length > buffer.length)
+        {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        line.getChars(0, length, buffer, 0);
+    }
+
+    public char[] lineBuffer()
+    {
+        return buffer;
+    }
+
+    public int lineStart()
+    {
+        return 0;
+    }
+
+    public int lineLength()
+    {
+        return length;
+    }
+
+    public void close()
+    {
+        input.close();
+    }
+}
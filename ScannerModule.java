@@ -7,85 +7,136 @@
 * @version 1.0
 */
 import java.io.File;
-import java.util.Scanner;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.FileReader;
-import java.io.FileInputStream;
 
-public class ScannerModule
+public class ScannerModule implements TokenSource
 {
-  private int lineNumber = 1;
-  private int index = 0;
-  private String currentLine;
+  protected int lineNumber = 1;
+  protected int index = 0;
+  protected char[] currentLine;   // current line is currentLine[lineStart, lineStart + lineLength)
+  protected int lineStart;
+  protected int lineLength;
   private File textFile;
-  private Scanner input;
+  private LineSource input;
+  protected int lexemeBegin;      // lexeme of the last identifier, number or string scanned
+  protected int lexemeEnd;
+  protected double numberValue;   // value of the last number scanned
+
+  // classes of the characters 0-255, so ASCII and Latin-1 text is classified by one
+  // table lookup; other characters go through the Character methods
+  private static final byte DIGIT = 1;              // 0-9
+  private static final byte IDENTIFIER_START = 2;   // letter or _
+  private static final byte IDENTIFIER_PART = 4;    // letter, _ or digit
+  private static final byte[] CHAR_CLASS = new byte[256];
+
+  // keywords indexed by keywordHash()
+  private static final char[][] KEYWORDS = new char[16][];
+  private static final int[] KEYWORD_IDS = new int[16];
+
+  static
+  {
+    for (char ch = 0; ch < 256; ch++)
+    {
+      if (ch >= '0' && ch <= '9')
+      {
+        CHAR_CLASS[ch] |= DIGIT;
+      }
+      if (ch == '_' || Character.isLetter(ch))
+      {
+        CHAR_CLASS[ch] |= IDENTIFIER_START;
+      }
+      if (ch == '_' || Character.isLetter(ch) || Character.isDigit(ch))
+      {
+        CHAR_CLASS[ch] |= IDENTIFIER_PART;
+      }
+    }
+    addKeyword("PRINT", Token.Print);
+    addKeyword("IF", Token.If);
+    addKeyword("ELSE", Token.Else);
+    addKeyword("ENDIF", Token.Endif);
+    addKeyword("SQRT", Token.Sqrt);
+    addKeyword("AND", Token.And);
+    addKeyword("OR", Token.Or);
+    addKeyword("NOT", Token.Not);
+  }
 
-  private Token TokenType()
+  // getToken() copies lexemes into a chunk that is never overwritten, since the
+  // LineSource reuses its line array; the SliceTokens it returns refer to the chunk
+  private static final int LEXEME_CHUNK = 8192;
+  private char[] lexemes = new char[LEXEME_CHUNK];
+  private int lexemesUsed;
+
+  private SymbolTable symbols;    // interns identifiers if set
+
+  // powers of ten that are exact doubles, for decodeNumber()
+  private static final double[] POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  // counters reported to ValidationMetrics and as a ScanEvent at the end of the input
+  private String sourceName;
+  private int[] tokenCounts = new int[Token.tokenNames.length];
+  private int commentLines;
+  private ScanEvent event;        // null until the first token is scanned
+  private long startNanos;
+  private boolean reported;       // also set when reporting is turned off
+
+  // scans one token starting at index and returns its id; subclasses may replace the engine.
+  // skipTrivia() has already moved index to the first character of the token, or to end of file
+  protected int TokenType()
   {
     if (isFileEnd()) {
-      return createToken(Token.EndOfFile, "");
+      return createToken(Token.EndOfFile);
     }
     char ch = nextChar();
-    while (ch == '\t' || ch == ' ')
-    {
-      ch = nextChar();
-    }
 
     int beginIndex = index - 1;
     switch (ch) {
-      case '(': return createToken(Token.LeftParen, "(");
-      case ')': return createToken(Token.RightParen, ")");
+      case '(': return createToken(Token.LeftParen);
+      case ')': return createToken(Token.RightParen);
       case '.':
         if (isDecimalDigit(peekChar()))
         {
           return scanNumberPostPeriod(beginIndex);
         }
-        return createToken(Token.Error, "");
-      case ';': return createToken(Token.Semicolon, ";");
-      case ',': return createToken(Token.Comma, ",");
+        return createToken(Token.Error);
+      case ';': return createToken(Token.Semicolon);
+      case ',': return createToken(Token.Comma);
       case ':':
         if (isEqual(peekChar()))
         {
-          return createToken(Token.Assign, ":=");
+          return createToken(Token.Assign);
         }
-        return createToken(Token.Colon, ":");
+        return createToken(Token.Colon);
       case '<':
         if (isEqual(peekChar()))
         {
-          return createToken(Token.LTEqual, "<=");
+          return createToken(Token.LTEqual);
         }
-        return createToken(Token.LessThan, "<");
+        return createToken(Token.LessThan);
       case '>':
         if (isEqual(peekChar()))
         {
-          return createToken(Token.GTEqual, ">=");
+          return createToken(Token.GTEqual);
         }
-        return createToken(Token.GreaterThan, ">");
-      case '=': return createToken(Token.Equal, "=");
+        return createToken(Token.GreaterThan);
+      case '=': return createToken(Token.Equal);
       case '!':
         if (isEqual(peekChar()))
         {
-          return createToken(Token.NotEqual, "!=");
+          return createToken(Token.NotEqual);
         }
-        return createToken(Token.Error, "");
+        return createToken(Token.Error);
       case '*':
         if (isStar(peekChar()))
         {
-          return createToken(Token.Raise, "**");
-        }
-        return createToken(Token.Multiply, "*");
-      case '/':
-        if (isComment(peekChar()))
-        {
-          currentLine = input.nextLine();
-          lineNumber ++;
-          index = 0;
-          return TokenType();
+          return createToken(Token.Raise);
         }
-        return createToken(Token.Divide, "/");
-      case '+': return createToken(Token.Plus, "+");
-      case '-': return createToken(Token.Minus, "-");
+        return createToken(Token.Multiply);
+      case '/': return createToken(Token.Divide);
+      case '+': return createToken(Token.Plus);
+      case '-': return createToken(Token.Minus);
       case '0':
         return scanPostZero(beginIndex);
       case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9':
@@ -96,13 +147,27 @@ public class ScannerModule
     }
   }
 
-  private Token createToken(int id, String lexeme)
+  // identifiers, numbers and strings: the lexeme is the range scanned since beginIndex
+  private int createToken(int id, int beginIndex)
+  {
+    lexemeBegin = beginIndex;
+    lexemeEnd = index;
+    return id;
+  }
+
+  // tokens whose lexeme is fixed (or empty, for errors)
+  private int createToken(int id)
+  {
+    consumePeekedChar(id);
+    return id;
+  }
+
+  private void consumePeekedChar(int id)
   {
     if (id == 0 || id == 4 || id == 14 || id == 18 || id == 19 || id == 20)
     {
       index ++;
     }
-    return new Token(id, lexeme);
   }
 
   private char nextChar()
@@ -111,7 +176,7 @@ public class ScannerModule
     {
       return '\0';
     }
-    return currentLine.charAt(index++);
+    return currentLine[lineStart + index++];
   }
 
   private boolean peek(char ch)
@@ -126,18 +191,18 @@ public class ScannerModule
 
   private char peekChar(int offset)
   {
-    return isLineEnd(offset) ? '\0' : currentLine.charAt(index + offset);
+    return isLineEnd(offset) ? '\0' : currentLine[lineStart + index + offset];
   }
 
 
   private boolean isLineEnd(int x)
   {
-    return (index + x >= currentLine.length());
+    return (index + x >= lineLength);
   }
 
-  private boolean isFileEnd()
+  protected boolean isFileEnd()
   {
-    return index >= currentLine.length() && !(input.hasNextLine());
+    return index >= lineLength && !(input.hasNextLine());
   }
 
   private static boolean isEqual(char ch)
@@ -169,31 +234,47 @@ public class ScannerModule
 
   private static boolean isDecimalDigit(char ch)
   {
-    switch (ch)
-    {
-      case '0': case '1': case '2': case '3': case '4':
-      case '5': case '6': case '7': case '8': case '9':
-        return true;
-      default:
-        return false;
-    }
+    return ch < 256 && (CHAR_CLASS[ch] & DIGIT) != 0;
   }
 
-  private Token scanNumberPostPeriod(int beginIndex)
+  private int scanNumberPostPeriod(int beginIndex)
   {
     skipDecimalDigits();
     return scanExponentOfNumeric(beginIndex);
   }
 
+  // digits are ASCII, so the run is measured by table lookups alone
   private void skipDecimalDigits()
   {
-    while (isDecimalDigit(peekChar()))
+    char[] line = currentLine;
+    int i = lineStart + index;
+    int end = lineStart + lineLength;
+    while (i < end && line[i] < 256 && (CHAR_CLASS[line[i]] & DIGIT) != 0)
     {
-      nextChar();
+      i ++;
+    }
+    index = i - lineStart;
+  }
+
+  // identifier characters are looked up in the table until a character above 255 needs the Character methods
+  private void skipIdentifierPart()
+  {
+    char[] line = currentLine;
+    int i = lineStart + index;
+    int end = lineStart + lineLength;
+    while (i < end)
+    {
+      char ch = line[i];
+      if (ch < 256 ? (CHAR_CLASS[ch] & IDENTIFIER_PART) == 0 : !isIdentifierPart(ch))
+      {
+        break;
+      }
+      i ++;
     }
+    index = i - lineStart;
   }
 
-  private Token scanExponentOfNumeric(int beginIndex)
+  private int scanExponentOfNumeric(int beginIndex)
   {
     switch (peekChar())
     {
@@ -208,22 +289,22 @@ public class ScannerModule
           default:
         }
         if (!isDecimalDigit(peekChar())) {
-          return createToken(Token.Error, "");
+          return createToken(Token.Error);
         }
         skipDecimalDigits();
         break;
       default:
     }
-    return createToken(Token.Number, currentLine.substring(beginIndex,index));
+    return createToken(Token.Number, beginIndex);
   }
 
-  private Token scanPostDigit(int beginIndex)
+  private int scanPostDigit(int beginIndex)
   {
     skipDecimalDigits();
     return scanFractionalNumeric(beginIndex);
   }
 
-  private Token scanFractionalNumeric(int beginIndex)
+  private int scanFractionalNumeric(int beginIndex)
   {
     if (peek('.'))
     {
@@ -233,7 +314,7 @@ public class ScannerModule
     return scanExponentOfNumeric(beginIndex);
   }
 
-  private Token scanPostZero(int beginIndex)
+  private int scanPostZero(int beginIndex)
   {
     switch (peekChar())
     {
@@ -250,62 +331,88 @@ public class ScannerModule
           nextChar();
           skipDecimalDigits();
         }
-        return createToken(Token.Number, currentLine.substring(beginIndex,index));
+        return createToken(Token.Number, beginIndex);
       default:
-        return createToken(Token.Number, currentLine.substring(beginIndex,index));
+        return createToken(Token.Number, beginIndex);
     }
   }
 
-  private Token scanIdentifierOrKeyword(int beginIndex,char ch)
+  // the identifier or keyword is recognized in place in the line; nothing is allocated
+  private int scanIdentifierOrKeyword(int beginIndex,char ch)
   {
-    StringBuilder valueBuilder = new StringBuilder();
-    valueBuilder.append(ch);
-
-    ch = peekChar();
-    while (isIdentifierPart(ch))
+    skipIdentifierPart();
+    if (!isIdentifierStart(ch))
     {
-      valueBuilder.append(nextChar());
-      ch = peekChar();
+      return createToken(Token.Error);
     }
+    int id = keywordId(currentLine, lineStart + beginIndex, lineStart + index);
+    if (id != Token.Identifier)
+    {
+      return createToken(id);
+    }
+    return createToken(Token.Identifier, beginIndex);
+  }
 
-    String value = valueBuilder.toString();
-
-    char start = value.charAt(0);
-    if (!isIdentifierStart(start))
+  // token id of the keyword in line[begin, end), or Token.Identifier if it is none
+  private static int keywordId(char[] line, int begin, int end)
+  {
+    int length = end - begin;
+    if (length < 2 || length > 5)
+    {
+      return Token.Identifier;
+    }
+    int h = keywordHash(line[begin], line[end - 1], length);
+    char[] keyword = KEYWORDS[h];
+    if (keyword == null || keyword.length != length)
     {
-      return createToken(Token.Error, "");
+      return Token.Identifier;
     }
+    for (int i = 0; i < length; i++)
+    {
+      if (line[begin + i] != keyword[i])
+      {
+        return Token.Identifier;
+      }
+    }
+    return KEYWORD_IDS[h];
+  }
 
-    switch (value)
+  // perfect hash of the keywords: no two of them have the same value
+  private static int keywordHash(char first, char last, int length)
+  {
+    return (first + last + length) & (KEYWORDS.length - 1);
+  }
+
+  private static void addKeyword(String lexeme, int id)
+  {
+    int h = keywordHash(lexeme.charAt(0), lexeme.charAt(lexeme.length() - 1), lexeme.length());
+    if (KEYWORDS[h] != null)
     {
-      case "PRINT": return createToken(Token.Print, "PRINT");
-      case "IF": return createToken(Token.If, "IF");
-      case "ELSE": return createToken(Token.Else, "ELSE");
-      case "ENDIF": return createToken(Token.Endif, "ENDIF");
-      case "SQRT": return createToken(Token.Sqrt, "SQRT");
-      case "AND": return createToken(Token.And, "AND");
-      case "OR": return createToken(Token.Or, "OR");
-      case "NOT": return createToken(Token.Not, "NOT");
-      default: break;
+      throw new IllegalStateException("Keyword hash collision between " + lexeme + " and " + new String(KEYWORDS[h]));
     }
-    return createToken(Token.Identifier, currentLine.substring(beginIndex,index));
+    KEYWORDS[h] = lexeme.toCharArray();
+    KEYWORD_IDS[h] = id;
   }
 
   private static boolean isIdentifierStart(char ch)
   {
-    switch (ch)
+    if (ch < 256)
     {
-      case '_': return true;
-      default: return Character.isLetter(ch);
+      return (CHAR_CLASS[ch] & IDENTIFIER_START) != 0;
     }
+    return Character.isLetter(ch);
   }
 
   private static boolean isIdentifierPart(char ch)
   {
-    return isIdentifierStart(ch) || Character.isDigit(ch);
+    if (ch < 256)
+    {
+      return (CHAR_CLASS[ch] & IDENTIFIER_PART) != 0;
+    }
+    return Character.isLetter(ch) || Character.isDigit(ch);
   }
 
-  private Token scanString (int beginIndex, char terminator)
+  private int scanString (int beginIndex, char terminator)
   {
     while (!isLineEnd(0) && peekChar() != terminator)
     {
@@ -313,19 +420,32 @@ public class ScannerModule
     }
     if (peekChar() != terminator)
     {
-      return createToken(Token.Error, "");
+      return createToken(Token.Error);
     } else {
       nextChar();
     }
-    return createToken(Token.String, currentLine.substring(beginIndex,index));
+    return createToken(Token.String, beginIndex);
+  }
+
+  protected void readLine()
+  {
+    input.nextLine();
+    currentLine = input.lineBuffer();
+    lineStart = input.lineStart();
+    lineLength = input.lineLength();
   }
 
-  private void readInFile(File textFile)
+  private void readInFile(File textFile, boolean mapped)
   {
     try
     {
-      input = new Scanner(textFile);
-    } catch (FileNotFoundException e)
+      if (mapped)
+      {
+        input = new MappedLineSource(textFile);
+      } else {
+        input = new ScannerLineSource(textFile);
+      }
+    } catch (IOException e)
     {
       e.printStackTrace();
     }
@@ -333,44 +453,395 @@ public class ScannerModule
 
   public ScannerModule(String fileName)
   {
+    this(fileName, false);
+  }
+
+  /**
+   * Creates a scanner over the given file.  In mapped mode the file is read
+   * through a memory-mapped FileChannel instead of java.util.Scanner, which
+   * avoids the regex line splitting and the String per line; the tokens
+   * and line numbers produced are the same in both modes.
+   *
+   * @param fileName name of text file
+   * @param mapped true to read the file through a MappedLineSource
+   */
+  public ScannerModule(String fileName, boolean mapped)
+  {
+    sourceName = fileName;
     textFile = new File(fileName);
-    readInFile(textFile);
-    this.currentLine = input.nextLine();
+    readInFile(textFile, mapped);
+    readFirstLine();
     this.lineNumber = lineNumber;
     this.index = index;
   }
 
-  public Token getToken()
+  /**
+   * Creates a scanner that reads its lines from the given source, e.g. a
+   * MappedLineSource over one chunk of a file.  Line numbers start at 1.
+   *
+   * @param input source of the lines to be scanned
+   */
+  public ScannerModule(LineSource input)
   {
+    this.input = input;
+    readFirstLine();
+  }
 
-    if (index >= currentLine.length() && input.hasNextLine())
+  private void readFirstLine()
+  {
+    if (input.hasNextLine())
     {
-      currentLine = input.nextLine();
-      lineNumber ++;
-      index = 0;
+      readLine();
+    } else {
+      currentLine = new char[0];   // empty file
     }
+  }
 
-    while (currentLine.length() == 0 )
+  /**
+   * Skips blanks, tabs, empty lines and // comments, in a single loop, until
+   * index is at the first character of the next token or at the end of the
+   * file.  A comment ends its line, so the rest of the line is skipped
+   * without being looked at.  Runs of comment lines of any length cost one
+   * loop iteration per line.
+   */
+  protected void skipTrivia()
+  {
+    while (true)
     {
-      currentLine = input.nextLine();
+      while (index < lineLength && (currentLine[lineStart + index] == ' ' || currentLine[lineStart + index] == '\t'))
+      {
+        index ++;
+      }
+      if (index < lineLength)
+      {
+        if (!(peekChar(0) == '/' && isComment(peekChar(1))))
+        {
+          return;
+        }
+        index = lineLength;
+        commentLines ++;
+      }
+      if (!input.hasNextLine())
+      {
+        return;
+      }
+      readLine();
       lineNumber ++;
       index = 0;
     }
+  }
 
-    while ((index+1 < currentLine.length()) && input.hasNextLine() && currentLine.charAt(index+0) == '/' && currentLine.charAt(index+1) == '/')
+  private int nextTokenId()
+  {
+    if (event == null)
     {
-      currentLine = input.nextLine();
-      lineNumber ++;
-      index = 0;
+      event = new ScanEvent();
+      event.begin();
+      startNanos = System.nanoTime();
+    }
+    skipTrivia();
+    int id = TokenType();
+    if (id == Token.Number)
+    {
+      numberValue = decodeNumber(currentLine, lineStart + lexemeBegin, lexemeEnd - lexemeBegin);
+    }
+    tokenCounts[id] ++;
+    if (id == Token.EndOfFile && !reported)
+    {
+      report();
     }
+    return id;
+  }
 
-    if (index+1 < currentLine.length() && !input.hasNextLine() && currentLine.charAt(index+0) == '/' && currentLine.charAt(index+1) == '/')
+  // adds this input's counters to ValidationMetrics and commits its ScanEvent, once
+  private void report()
+  {
+    reported = true;
+    report(event, sourceName, System.nanoTime() - startNanos, lineNumber, commentLines, tokenCounts);
+  }
+
+  /**
+   * Adds the counters of one scanned input to ValidationMetrics and commits
+   * its ScanEvent; used by scanners and by ParallelScanner for a whole file
+   *
+   * @param event        event begun when the scan started
+   * @param source       name of the input, or null
+   * @param nanos        time from the first token to the end of the input
+   * @param lines        number of lines read
+   * @param comments     number of // comments skipped
+   * @param tokenCounts  number of tokens scanned, indexed by token id
+   */
+  static void report(ScanEvent event, String source, long nanos, int lines, int comments, int[] tokenCounts)
+  {
+    ValidationMetrics.recordScan(nanos, lines, comments, tokenCounts);
+    event.end();
+    if (event.shouldCommit())
     {
-      index = currentLine.length();
+      event.source = source;
+      event.lines = lines;
+      event.commentLines = comments;
+      for (int count : tokenCounts)
+      {
+        event.tokens += count;
+      }
+      event.identifiers = tokenCounts[Token.Identifier];
+      event.numbers = tokenCounts[Token.Number];
+      event.strings = tokenCounts[Token.String];
+      event.errorTokens = tokenCounts[Token.Error];
+      event.commit();
     }
+  }
 
-    return TokenType();
+  /**
+   * Turns off reporting the input to ValidationMetrics and as a ScanEvent
+   * at its end, for scanners that scan part of a larger input whose owner
+   * reports it as a whole, e.g. the chunk scanners of a ParallelScanner
+   *
+   * @param enabled false to leave the reporting to the caller
+   */
+  public void setReportingEnabled(boolean enabled)
+  {
+    reported = !enabled;
+  }
 
+  /**
+   * Decodes a number lexeme, digits with an optional fraction and exponent.
+   * Up to 18 significant digits are gathered in a long; when that holds all
+   * of them and both it and the power of ten are exact doubles, one multiply
+   * or divide gives the correctly rounded value.  Other numbers go through
+   * Double.parseDouble(), so the result is always the same as Double.parseDouble()'s.
+   *
+   * @param source array holding the lexeme
+   * @param start  index of the lexeme in source
+   * @param length length of the lexeme
+   * @return value of the number
+   * @throws NumberFormatException if the range is not a number
+   */
+  public static double decodeNumber(char[] source, int start, int length)
+  {
+    int end = start + length;
+    int i = start;
+    long mantissa = 0;
+    int digits = 0;               // significant digits gathered in mantissa
+    int scale = 0;                // power of ten mantissa is multiplied by
+    boolean dropped = false;      // a nonzero digit did not fit in mantissa
+    boolean seen = false;         // at least one digit
+    for (; i < end && source[i] >= '0' && source[i] <= '9'; i ++)
+    {
+      seen = true;
+      if (digits < 18)
+      {
+        mantissa = mantissa * 10 + (source[i] - '0');
+        if (mantissa != 0)
+        {
+          digits ++;
+        }
+      } else {
+        scale ++;
+        dropped |= source[i] != '0';
+      }
+    }
+    if (i < end && source[i] == '.')
+    {
+      for (i ++; i < end && source[i] >= '0' && source[i] <= '9'; i ++)
+      {
+        seen = true;
+        if (digits < 18)
+        {
+          mantissa = mantissa * 10 + (source[i] - '0');
+          if (mantissa != 0)
+          {
+            digits ++;
+          }
+          scale --;
+        } else {
+          dropped |= source[i] != '0';
+        }
+      }
+    }
+    if (seen && i < end && (source[i] == 'e' || source[i] == 'E'))
+    {
+      i ++;
+      boolean negative = i < end && source[i] == '-';
+      if (i < end && (source[i] == '-' || source[i] == '+'))
+      {
+        i ++;
+      }
+      int exponent = 0;
+      int exponentBegin = i;
+      for (; i < end && source[i] >= '0' && source[i] <= '9'; i ++)
+      {
+        if (exponent < 100000)
+        {
+          exponent = exponent * 10 + (source[i] - '0');
+        }
+      }
+      if (i == exponentBegin)
+      {
+        seen = false;
+      }
+      scale += negative ? -exponent : exponent;
+    }
+    if (seen && i == end && !dropped)
+    {
+      if (mantissa == 0)
+      {
+        return 0.0;
+      }
+      if (mantissa <= (1L << 53) && scale >= -22 && scale <= 22)
+      {
+        return scale >= 0 ? mantissa * POW10[scale] : mantissa / POW10[-scale];
+      }
+    }
+    return Double.parseDouble(new String(source, start, length));
+  }
+
+  /**
+   * Accessor method for the value of the last Number token scanned, decoded
+   * as it was scanned so later stages need not parse its lexeme again
+   * @return value of the last number
+   */
+  public double getNumberValue()
+  {
+    return numberValue;
+  }
+
+  /**
+   * Sets a table in which every identifier scanned from now on is interned.
+   * getToken() then returns the symbol's shared SymbolToken for an
+   * identifier instead of a new token; getTokens() stores each symbol in
+   * the buffer next to the identifier.
+   *
+   * @param symbols table to intern identifiers in, or null to stop interning
+   */
+  public void setSymbolTable(SymbolTable symbols)
+  {
+    this.symbols = symbols;
+  }
+
+  /**
+   * Accessor method for the table identifiers are interned in
+   * @return table set by setSymbolTable(), or null if identifiers are not interned
+   */
+  public SymbolTable getSymbolTable()
+  {
+    return symbols;
+  }
+
+  /**
+   * Sets the name under which the input is reported to ValidationMetrics
+   * and in ScanEvents, e.g. the file a LineSource reads
+   *
+   * @param name name of the input
+   */
+  public void setSourceName(String name)
+  {
+    sourceName = name;
+  }
+
+  /**
+   * Accessor method for the number of tokens of one kind scanned so far
+   * @param id token id
+   * @return tokens with that id returned by this scanner
+   */
+  public int getTokenCount(int id)
+  {
+    return tokenCounts[id];
+  }
+
+  /**
+   * Accessor method for the number of comments skipped so far
+   * @return // comments skipped by this scanner
+   */
+  public int getCommentLines()
+  {
+    return commentLines;
+  }
+
+  public Token getToken()
+  {
+    int id = nextTokenId();
+    Token token = Token.fixed(id);
+    if (token != null)
+    {
+      return token;
+    }
+    if (id == Token.Error)
+    {
+      return new Token(id, "");
+    }
+    if (id == Token.Identifier && symbols != null)
+    {
+      return symbols.token(symbols.intern(currentLine, lineStart + lexemeBegin, lexemeEnd - lexemeBegin));
+    }
+    int length = lexemeEnd - lexemeBegin;
+    if (lexemesUsed + length > lexemes.length)
+    {
+      lexemes = new char[Math.max(LEXEME_CHUNK, length)];
+      lexemesUsed = 0;
+    }
+    System.arraycopy(currentLine, lineStart + lexemeBegin, lexemes, lexemesUsed, length);
+    if (id == Token.Number)
+    {
+      token = new NumberToken(lexemes, lexemesUsed, length, numberValue);
+    } else {
+      token = new SliceToken(id, lexemes, lexemesUsed, length);
+    }
+    lexemesUsed += length;
+    return token;
+  }
+
+  /**
+   * Scans tokens into a packed buffer instead of returning a Token per call.
+   * Only the characters of identifiers, numbers and strings are copied, into
+   * the buffer's own text array; no objects are allocated per token.  Stops
+   * after the EndOfFile token has been added.
+   *
+   * @param buffer buffer the tokens are appended to
+   * @param maxTokens maximum number of tokens to scan
+   * @return number of tokens appended
+   */
+  public int getTokens(PackedTokenBuffer buffer, int maxTokens)
+  {
+    int count = 0;
+    if (symbols != null)
+    {
+      buffer.setSymbolTable(symbols);
+    }
+    while (count < maxTokens)
+    {
+      int id = nextTokenId();
+      if (id == Token.Number)
+      {
+        buffer.add(id, currentLine, lineStart + lexemeBegin, lexemeEnd - lexemeBegin, lineNumber, numberValue);
+      } else if (id == Token.Identifier || id == Token.String)
+      {
+        buffer.add(id, currentLine, lineStart + lexemeBegin, lexemeEnd - lexemeBegin, lineNumber);
+        if (id == Token.Identifier && symbols != null)
+        {
+          buffer.setSymbol(buffer.size() - 1, symbols.intern(currentLine, lineStart + lexemeBegin, lexemeEnd - lexemeBegin));
+        }
+      } else {
+        buffer.add(id, lineNumber);
+      }
+      count ++;
+      if (id == Token.EndOfFile)
+      {
+        break;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Scans the rest of the input into a packed buffer
+   *
+   * @param buffer buffer the tokens are appended to
+   * @return number of tokens appended, including EndOfFile
+   */
+  public int getTokens(PackedTokenBuffer buffer)
+  {
+    return getTokens(buffer, Integer.MAX_VALUE);
   }
 
 
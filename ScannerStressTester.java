@@ -0,0 +1,96 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * ScannerStressTester checks that the ScannerModule skips long runs of comment
+ * and blank lines in linear time and without deep recursion.  For each size
+ * it writes a file holding a short program wrapped in that many comment lines
+ * (column 0 and indented comments, blank lines, a trailing comment after a
+ * statement and a comment on the last line without a line terminator),
+ * scans it and reports the time per line.  The time per line should stay
+ * roughly constant as the size doubles.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class ScannerStressTester
+{
+    /**
+     * Driver method for the stress test
+     *
+     * @param args optional number of comment lines of the first run (args[0], default 1000000)
+     *             and number of runs, each twice as large as the previous (args[1], default 3)
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int lines = 1000000;
+        int runs = 3;
+        if (args.length >= 1)
+        {
+            lines = Integer.parseInt(args[0]);
+        }
+        if (args.length >= 2)
+        {
+            runs = Integer.parseInt(args[1]);
+        }
+        for (int run = 0; run < runs; run++, lines *= 2)
+        {
+            File file = File.createTempFile("simpcalc-comments", ".txt");
+            file.deleteOnExit();
+            writeCommentFile(file, lines);
+            for (String mode : new String[] {"scanner", "mapped"})
+            {
+                long start = System.nanoTime();
+                ScannerModule sm = new ScannerModule(file.getPath(), mode.equals("mapped"));
+                int tokens = 0;
+                while (sm.getToken().getId() != Token.EndOfFile)
+                {
+                    tokens++;
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("%-8s %,12d comment lines  %,8d ms  %6.1f ns/line  %d tokens%n",
+                                  mode, lines, elapsed / 1000000, (double) elapsed / lines, tokens);
+                if (tokens != 9)
+                {
+                    System.out.println("Unexpected token count, expected 9");
+                }
+            }
+            file.delete();
+        }
+    }
+
+    // x := 1; PRINT(x); with comment lines around and between them
+    private static void writeCommentFile(File file, int lines) throws IOException
+    {
+        BufferedWriter out = new BufferedWriter(new FileWriter(file));
+        for (int i = 0; i < lines / 2; i++)
+        {
+            out.write(commentLine(i));
+            out.newLine();
+        }
+        out.write("x := 1; // trailing comment");
+        out.newLine();
+        for (int i = lines / 2; i < lines; i++)
+        {
+            out.write(commentLine(i));
+            out.newLine();
+        }
+        out.write("PRINT(x);");
+        out.newLine();
+        out.write("// comment at end of file");
+        out.close();
+    }
+
+    private static String commentLine(int i)
+    {
+        switch (i % 4)
+        {
+            case 0: return "// Licensed under the terms of the SimpCalc license, line " + i;
+            case 1: return "   // indented comment";
+            case 2: return "";
+            default: return "\t// tab-indented comment";
+        }
+    }
+}
@@ -11,7 +11,9 @@ public class ScannerTester
     /**
      * Driver method that tests the ScannerModule class
      *
-     * @param args optional command line string argument (args[0]) to specify name of text file
+     * @param args optional command line string argument (args[0]) to specify name of text file,
+     *             followed by -mapped to read the file through a memory-mapped channel
+     *             and/or -dfa to use the table-driven DfaScannerModule
      */
     public static void main(String[] args)
     {
@@ -20,7 +22,14 @@ public class ScannerTester
         {
             fileName = args[0];
         }
-        ScannerModule sm = new ScannerModule(fileName);
+        boolean mapped = false;
+        boolean dfa = false;
+        for (int i = 1; i < args.length; i++)
+        {
+            mapped = mapped || args[i].equals("-mapped");
+            dfa = dfa || args[i].equals("-dfa");
+        }
+        ScannerModule sm = dfa ? new DfaScannerModule(fileName, mapped) : new ScannerModule(fileName, mapped);
         Token t = sm.getToken();
         while ( t.getId() != Token.EndOfFile )
         {
@@ -0,0 +1,104 @@
+/**
+ * SliceToken is a Token whose lexeme is a range of a character array
+ * instead of a String.  ScannerModule.getToken() returns identifiers,
+ * numbers and strings as SliceTokens over its lexeme chunks, so the
+ * scanner creates no String per token; the String is only made, once,
+ * when getLexeme() is called.  Parsers that only look at getId() never
+ * cause one to be made.
+ *
+ * The token is also a CharSequence over its lexeme, returned by
+ * getLexemeChars().  The array must not be changed while the token is in use.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class SliceToken extends Token implements CharSequence
+{
+    private final char[] source;
+    private final int offset;
+    private final int length;
+    private String lexeme;    // made by the first getLexeme()
+
+    /**
+     * Constructor for SliceToken objects
+     *
+     * @param id     token id
+     * @param source array holding the lexeme
+     * @param offset index of the lexeme in source
+     * @param length length of the lexeme
+     */
+    public SliceToken(int id, char[] source, int offset, int length)
+    {
+        super(id, null);
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Accessor method for token lexeme.  Makes the String on the first call.
+     * @return token lexeme
+     */
+    public String getLexeme()
+    {
+        String s = lexeme;
+        if (s == null)
+        {
+            s = new String(source, offset, length);
+            lexeme = s;
+        }
+        return s;
+    }
+
+    /**
+     * Accessor method for token lexeme as a view of the characters
+     * @return this token
+     */
+    public CharSequence getLexemeChars()
+    {
+        return this;
+    }
+
+    /**
+     * Copies the lexeme into an array
+     *
+     * @param dst      array to copy to
+     * @param dstBegin index in dst of the first character
+     */
+    public void getChars(char[] dst, int dstBegin)
+    {
+        System.arraycopy(source, offset, dst, dstBegin, length);
+    }
+
+    public int length()
+    {
+        return length;
+    }
+
+    public char charAt(int index)
+    {
+        if (index < 0 || index >= length)
+        {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return source[offset + index];
+    }
+
+    public CharSequence subSequence(int start, int end)
+    {
+        if (start < 0 || end > length || start > end)
+        {
+            throw new IndexOutOfBoundsException("range [" + start + ", " + end + "), length " + length);
+        }
+        return new SliceToken(getId(), source, offset + start, end - start);
+    }
+
+    /**
+     * Returns the lexeme, as CharSequence requires
+     * @return token lexeme
+     */
+    public String toString()
+    {
+        return getLexeme();
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * SymbolTable interns identifier lexemes and numbers them densely from 0 in
+ * the order they are first seen.  Lexemes are hashed and compared straight
+ * from a range of a character array, so looking up a name that is already
+ * known creates no String; the name's String and its shared SymbolToken
+ * are made once, when the name is first interned.
+ *
+ * A ScannerModule given a table with setSymbolTable() interns every
+ * identifier it scans and returns the symbol's shared token for it, so
+ * later stages can compare and index variables by getSymbol().
+ *
+ * A table is not thread-safe; use one per thread or synchronize around it.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class SymbolTable
+{
+    private int[] table = new int[64];   // open addressing: symbol + 1, or 0 for a free slot
+    private int[] hashes = new int[16];
+    private int[] starts = new int[16];  // name of each symbol is chars[start, start + length)
+    private int[] lengths = new int[16];
+    private char[] chars = new char[256];
+    private int charsUsed;
+    private String[] names = new String[16];
+    private SymbolToken[] tokens = new SymbolToken[16];
+    private int size;
+
+    /**
+     * Returns the symbol of a name, adding it if it is new
+     *
+     * @param source array holding the name
+     * @param start  index of the name in source
+     * @param length length of the name
+     * @return symbol of the name, from 0 to size() - 1
+     */
+    public int intern(char[] source, int start, int length)
+    {
+        int hash = 0;
+        for (int i = start; i < start + length; i++)
+        {
+            hash = 31 * hash + source[i];
+        }
+        int mask = table.length - 1;
+        for (int i = spread(hash) & mask; ; i = (i + 1) & mask)
+        {
+            int entry = table[i];
+            if (entry == 0)
+            {
+                return add(source, start, length, hash, i);
+            }
+            int symbol = entry - 1;
+            if (hashes[symbol] == hash && lengths[symbol] == length && sameChars(symbol, source, start))
+            {
+                return symbol;
+            }
+        }
+    }
+
+    /**
+     * Finds the symbol of a name without adding it
+     *
+     * @param name name to look up
+     * @return symbol of the name, or -1 if it has not been interned
+     */
+    public int find(CharSequence name)
+    {
+        int length = name.length();
+        int hash = 0;
+        for (int i = 0; i < length; i++)
+        {
+            hash = 31 * hash + name.charAt(i);
+        }
+        int mask = table.length - 1;
+        for (int i = spread(hash) & mask; table[i] != 0; i = (i + 1) & mask)
+        {
+            int symbol = table[i] - 1;
+            if (hashes[symbol] == hash && names[symbol].contentEquals(name))
+            {
+                return symbol;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Accessor method for the name of a symbol
+     * @param symbol symbol
+     * @return interned name
+     */
+    public String name(int symbol)
+    {
+        return names[symbol];
+    }
+
+    /**
+     * Accessor method for the shared identifier token of a symbol
+     * @param symbol symbol
+     * @return Identifier token whose lexeme is the symbol's name
+     */
+    public SymbolToken token(int symbol)
+    {
+        return tokens[symbol];
+    }
+
+    /**
+     * Accessor method for the number of symbols
+     * @return number of distinct names interned
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    private boolean sameChars(int symbol, char[] source, int start)
+    {
+        int s = starts[symbol];
+        for (int i = 0; i < lengths[symbol]; i++)
+        {
+            if (chars[s + i] != source[start + i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int add(char[] source, int start, int length, int hash, int slot)
+    {
+        if (size == names.length)
+        {
+            int capacity = size * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            names = Arrays.copyOf(names, capacity);
+            tokens = Arrays.copyOf(tokens, capacity);
+        }
+        if (charsUsed + length > chars.length)
+        {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsUsed + length));
+        }
+        System.arraycopy(source, start, chars, charsUsed, length);
+        int symbol = size++;
+        hashes[symbol] = hash;
+        starts[symbol] = charsUsed;
+        lengths[symbol] = length;
+        names[symbol] = new String(source, start, length);
+        tokens[symbol] = new SymbolToken(names[symbol], symbol);
+        charsUsed += length;
+        table[slot] = symbol + 1;
+        if (size * 2 > table.length)
+        {
+            rehash();
+        }
+        return symbol;
+    }
+
+    private void rehash()
+    {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int symbol = 0; symbol < size; symbol++)
+        {
+            int i = spread(hashes[symbol]) & mask;
+            while (table[i] != 0)
+            {
+                i = (i + 1) & mask;
+            }
+            table[i] = symbol + 1;
+        }
+    }
+
+    // mixes the high bits into the low ones used to pick a slot
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * SymbolToken is the Identifier token of an interned name.  A SymbolTable
+ * makes one per symbol, and a ScannerModule that interns identifiers
+ * returns that same token for every occurrence of the name.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class SymbolToken extends Token
+{
+    private final int symbol;
+
+    /**
+     * Constructor for SymbolToken objects
+     *
+     * @param name   interned name
+     * @param symbol symbol of the name in its SymbolTable
+     */
+    public SymbolToken(String name, int symbol)
+    {
+        super(Identifier, name);
+        this.symbol = symbol;
+    }
+
+    /**
+     * Accessor method for the symbol of the identifier
+     * @return dense number of the name in its SymbolTable
+     */
+    public int getSymbol()
+    {
+        return symbol;
+    }
+}
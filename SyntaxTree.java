@@ -0,0 +1,306 @@
+import java.util.Arrays;
+
+/**
+ * SyntaxTree holds the abstract syntax tree of a SimpCalc program built by
+ * NewParserModule.parseTree().  Nodes are not objects: a node is an index
+ * into parallel primitive arrays holding its kind, the index of its token in
+ * the program's PackedTokenBuffer, its first child and its next sibling.
+ * A tree therefore costs four ints per node on top of its token stream.
+ *
+ * Node kinds and their children:
+ * <pre>
+ * PROGRAM     statements
+ * BLOCK       statements
+ * ASSIGN      expression              token: the identifier assigned to
+ * PRINT       arguments (STRING or expressions)    token: PRINT
+ * IF          CONDITION, BLOCK [, BLOCK for the ELSE part]    token: IF
+ * CONDITION   expression, expression  token: relational operator, AND or OR
+ * BINARY      expression, expression  token: + - * / or **
+ * NEGATE      expression              token: unary -
+ * SQRT        expression              token: SQRT
+ * IDENTIFIER, NUMBER, STRING          token: the literal
+ * </pre>
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class SyntaxTree
+{
+    // node kinds
+    public static final int PROGRAM    = 0;
+    public static final int BLOCK      = 1;
+    public static final int ASSIGN     = 2;
+    public static final int PRINT      = 3;
+    public static final int IF         = 4;
+    public static final int CONDITION  = 5;
+    public static final int BINARY     = 6;
+    public static final int NEGATE     = 7;
+    public static final int SQRT       = 8;
+    public static final int IDENTIFIER = 9;
+    public static final int NUMBER     = 10;
+    public static final int STRING     = 11;
+
+    public static String[] kindNames =
+    {
+        "PROGRAM", "BLOCK", "ASSIGN", "PRINT", "IF", "CONDITION",
+        "BINARY", "NEGATE", "SQRT", "IDENTIFIER", "NUMBER", "STRING"
+    };
+
+    public static final int NONE = -1;   // no child, no sibling or no token
+
+    private PackedTokenBuffer tokens;
+    private int[] kind;
+    private int[] token;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int size = 0;
+    private int root = NONE;
+
+    // nodes built but not yet attached to a parent
+    private int[] stack = new int[64];
+    private int top = 0;
+
+    /**
+     * Constructor for SyntaxTree objects
+     *
+     * @param tokens token stream the node token indexes refer to
+     */
+    public SyntaxTree(PackedTokenBuffer tokens)
+    {
+        this.tokens = tokens;
+        int capacity = Math.max(16, tokens.size());
+        kind = new int[capacity];
+        token = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+    }
+
+    /**
+     * Number of unattached nodes, used by the parser to count the children
+     * of a node with a variable number of them
+     *
+     * @return number of nodes built but not yet given a parent
+     */
+    public int pending()
+    {
+        return top;
+    }
+
+    /**
+     * Adds a node whose children are the last childCount unattached nodes,
+     * in the order they were built.  The new node becomes unattached itself.
+     *
+     * @param nodeKind   one of the node kind constants
+     * @param tokenIndex index of the node's token, or NONE
+     * @param childCount number of unattached nodes that become its children
+     * @return index of the new node
+     */
+    public int add(int nodeKind, int tokenIndex, int childCount)
+    {
+        if (size == kind.length)
+        {
+            grow(size * 2);
+        }
+        int node = size++;
+        kind[node] = nodeKind;
+        token[node] = tokenIndex;
+        nextSibling[node] = NONE;
+        firstChild[node] = childCount == 0 ? NONE : stack[top - childCount];
+        for (int i = top - childCount; i < top - 1; i++)
+        {
+            nextSibling[stack[i]] = stack[i + 1];
+        }
+        top -= childCount;
+        if (top == stack.length)
+        {
+            int[] grown = new int[stack.length * 2];
+            System.arraycopy(stack, 0, grown, 0, top);
+            stack = grown;
+        }
+        stack[top++] = node;
+        root = node;
+        return node;
+    }
+
+    /**
+     * Shrinks the arrays to the number of nodes, for trees that are kept around
+     */
+    public void trim()
+    {
+        grow(size);
+        stack = new int[1];
+        top = 0;
+    }
+
+    private void grow(int capacity)
+    {
+        kind = Arrays.copyOf(kind, capacity);
+        token = Arrays.copyOf(token, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+    }
+
+    /**
+     * Accessor method for the root node (the PROGRAM node of a complete parse)
+     * @return index of the root node, or NONE if the tree is empty
+     */
+    public int root()
+    {
+        return root;
+    }
+
+    /**
+     * Accessor method for the number of nodes
+     * @return number of nodes
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Accessor method for the token stream
+     * @return token stream the node token indexes refer to
+     */
+    public PackedTokenBuffer tokens()
+    {
+        return tokens;
+    }
+
+    /**
+     * Accessor method for a node's kind
+     * @param node node index
+     * @return node kind
+     */
+    public int kind(int node)
+    {
+        return kind[node];
+    }
+
+    /**
+     * Accessor method for a node's token
+     * @param node node index
+     * @return index of the node's token in tokens(), or NONE
+     */
+    public int token(int node)
+    {
+        return token[node];
+    }
+
+    /**
+     * Accessor method for the id of a node's token, e.g. the operator of a BINARY node
+     * @param node node index
+     * @return token id
+     */
+    public int tokenId(int node)
+    {
+        return tokens.id(token[node]);
+    }
+
+    /**
+     * Accessor method for the lexeme of a node's token
+     * @param node node index
+     * @return token lexeme
+     */
+    public String lexeme(int node)
+    {
+        return tokens.lexeme(token[node]);
+    }
+
+    /**
+     * Accessor method for a node's first child
+     * @param node node index
+     * @return index of the first child, or NONE
+     */
+    public int firstChild(int node)
+    {
+        return firstChild[node];
+    }
+
+    /**
+     * Accessor method for a node's next sibling
+     * @param node node index
+     * @return index of the next sibling, or NONE
+     */
+    public int nextSibling(int node)
+    {
+        return nextSibling[node];
+    }
+
+    /**
+     * Accessor method for a node's i-th child
+     * @param node node index
+     * @param i position of the child, starting at 0
+     * @return index of the child, or NONE if there are not that many
+     */
+    public int child(int node, int i)
+    {
+        int child = firstChild[node];
+        while (i-- > 0 && child != NONE)
+        {
+            child = nextSibling[child];
+        }
+        return child;
+    }
+
+    /**
+     * Writes the tree as an s-expression, e.g. (ASSIGN x (BINARY + a 1))
+     * @return printable form of the tree
+     */
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        if (root != NONE)
+        {
+            append(sb, root);
+        }
+        return sb.toString();
+    }
+
+    // appends the subtree of node in pre-order, keeping the nodes whose ')' is still to come on a stack
+    private void append(StringBuilder sb, int node)
+    {
+        int[] open = new int[64];
+        int depth = 0;
+        while (true)
+        {
+            int k = kind[node];
+            if (k == IDENTIFIER || k == NUMBER || k == STRING)
+            {
+                sb.append(lexeme(node));
+            }
+            else
+            {
+                sb.append('(').append(kindNames[k]);
+                if (k == ASSIGN || k == CONDITION || k == BINARY)
+                {
+                    sb.append(' ').append(lexeme(node));
+                }
+                if (firstChild[node] != NONE)
+                {
+                    if (depth == open.length)
+                    {
+                        open = Arrays.copyOf(open, depth * 2);
+                    }
+                    open[depth++] = node;
+                    node = firstChild[node];
+                    sb.append(' ');
+                    continue;
+                }
+                sb.append(')');
+            }
+            // close the nodes whose last child this was, then go on to the next sibling
+            while (depth > 0 && nextSibling[node] == NONE)
+            {
+                node = open[--depth];
+                sb.append(')');
+            }
+            if (depth == 0)
+            {
+                return;
+            }
+            node = nextSibling[node];
+            sb.append(' ');
+        }
+    }
+}
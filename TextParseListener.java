@@ -0,0 +1,80 @@
+import java.io.PrintStream;
+
+/**
+ * TextParseListener writes the messages NewParserModule used to print
+ * itself ("Assignment Statement Recognized", "If Statement Begins", parse
+ * errors, ...).  The messages are collected in a buffer and written to the
+ * stream in large pieces, at the latest when the parse ends.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class TextParseListener implements ParseListener
+{
+    private static final int FLUSH_SIZE = 1 << 13;
+
+    private PrintStream out;
+    private StringBuilder buffer = new StringBuilder(FLUSH_SIZE + 64);
+
+    /**
+     * Constructor for TextParseListener objects
+     *
+     * @param out stream the messages are written to
+     */
+    public TextParseListener(PrintStream out)
+    {
+        this.out = out;
+    }
+
+    public void statementBegins(int kind, int line)
+    {
+        if (kind == Token.If)
+        {
+            println("If Statement Begins");
+        }
+    }
+
+    public void statementEnds(int kind, int line)
+    {
+        switch (kind)
+        {
+            case Token.Identifier:
+                println("Assignment Statement Recognized");
+                break;
+            case Token.Print:
+                println("Print Statement Recognized");
+                break;
+            default:
+                println("If Statement Ends");
+        }
+    }
+
+    public void error(Diagnostic diagnostic)
+    {
+        println(diagnostic.toString());
+    }
+
+    public void parseEnds(boolean valid)
+    {
+        flush();
+    }
+
+    /**
+     * Writes the buffered messages to the stream
+     */
+    public void flush()
+    {
+        out.print(buffer);
+        out.flush();
+        buffer.setLength(0);
+    }
+
+    private void println(String message)
+    {
+        buffer.append(message).append(System.lineSeparator());
+        if (buffer.length() >= FLUSH_SIZE)
+        {
+            flush();
+        }
+    }
+}
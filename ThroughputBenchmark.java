@@ -0,0 +1,374 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * ThroughputBenchmark measures how fast ScannerModule.getToken(),
+ * ParserModule.parse() and NewParserModule.parse() process programs of a
+ * given size and token mix.  For every mix and size it writes a generated
+ * program to a temporary file, runs each benchmark a number of warm-up
+ * iterations and then a number of measured iterations, and reports the
+ * median time per run, tokens per second, bytes per second, bytes
+ * allocated per run and per second, and the collections done while
+ * measuring.  Every run starts from the file name, so the parser
+ * benchmarks include scanning.
+ *
+ * Token mixes:
+ *   identifiers  assignments between long identifiers
+ *   numbers      numeric literals with fractions and exponents
+ *   strings      PRINT statements with string arguments
+ *   nested       deeply parenthesised expressions
+ *   logic        nested IF statements whose conditions use AND and OR
+ *   generated    a mix of all statements written by ProgramGenerator
+ *
+ * ParserModule prints a line per statement; its output is discarded while
+ * it runs, but the cost of formatting it is part of its time.  A benchmark
+ * whose parser runs out of stack on an input is reported as such instead of
+ * being timed; ParserModule recurses once per statement of a block.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class ThroughputBenchmark
+{
+    private static final String[] MIXES = {"identifiers", "numbers", "strings", "nested", "logic", "generated"};
+    private static final String[] BENCHMARKS = {"scanner", "parser", "newparser"};
+    private static final String[] OPERATORS = {" + ", " - ", " * ", " / ", " ** "};
+
+    private static final PrintStream DISCARD = new PrintStream(new OutputStream()
+    {
+        public void write(int b)
+        {
+        }
+
+        public void write(byte[] b, int off, int len)
+        {
+        }
+    });
+
+    private int warmup;
+    private int iterations;
+
+    /**
+     * Constructor for ThroughputBenchmark objects
+     *
+     * @param warmup     number of unmeasured runs before measuring
+     * @param iterations number of measured runs
+     */
+    public ThroughputBenchmark(int warmup, int iterations)
+    {
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Runs one benchmark on one file and prints a line of results
+     *
+     * @param benchmark scanner, parser or newparser
+     * @param mix       token mix of the file, for the report
+     * @param file      program to process
+     * @param tokens    number of tokens in the file
+     */
+    public void run(String benchmark, String mix, File file, long tokens)
+    {
+        long[] nanos = new long[iterations];
+        long gcCount;
+        long gcMillis;
+        long allocated;
+        long total = 0;
+        try
+        {
+            for (int i = 0; i < warmup; i++)
+            {
+                runOnce(benchmark, file.getPath());
+            }
+            gcCount = gcCount();
+            gcMillis = gcMillis();
+            allocated = allocatedBytes();
+            for (int i = 0; i < iterations; i++)
+            {
+                long start = System.nanoTime();
+                runOnce(benchmark, file.getPath());
+                nanos[i] = System.nanoTime() - start;
+                total += nanos[i];
+            }
+        } catch (StackOverflowError e)
+        {
+            System.out.printf("%-10s %-12s %,14d B %,10d tok  stack overflow%n", benchmark, mix, file.length(), tokens);
+            return;
+        }
+        if (allocated >= 0)
+        {
+            allocated = allocatedBytes() - allocated;
+        }
+        gcCount = gcCount() - gcCount;
+        gcMillis = gcMillis() - gcMillis;
+
+        Arrays.sort(nanos);
+        double median = nanos[iterations / 2] / 1e9;
+        System.out.printf("%-10s %-12s %,14d B %,10d tok  %10.3f ms  %8.2f Mtok/s  %8.2f MB/s",
+                          benchmark, mix, file.length(), tokens, median * 1e3,
+                          tokens / median / 1e6, file.length() / median / 1e6);
+        if (allocated >= 0)
+        {
+            System.out.printf("  %,14d B/op  %8.1f MB/s alloc", allocated / iterations, allocated / (total / 1e9) / 1e6);
+        }
+        System.out.printf("  %d gc %d ms%n", gcCount, gcMillis);
+    }
+
+    private static void runOnce(String benchmark, String fileName)
+    {
+        if (benchmark.equals("scanner"))
+        {
+            ScannerModule sm = new ScannerModule(fileName);
+            while (sm.getToken().getId() != Token.EndOfFile)
+            {
+            }
+        }
+        else if (benchmark.equals("parser"))
+        {
+            PrintStream out = System.out;
+            System.setOut(DISCARD);
+            try
+            {
+                new ParserModule(fileName).parse();
+            } finally
+            {
+                System.setOut(out);
+            }
+        }
+        else
+        {
+            new NewParserModule(fileName).parse();
+        }
+    }
+
+    /**
+     * Counts the tokens of a file, not counting EndOfFile
+     *
+     * @param file program to scan
+     * @return number of tokens
+     */
+    public static long countTokens(File file)
+    {
+        ScannerModule sm = new ScannerModule(file.getPath());
+        long tokens = 0;
+        while (sm.getToken().getId() != Token.EndOfFile)
+        {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    // bytes allocated by this thread so far, or -1 if the JVM cannot tell
+    private static long allocatedBytes()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled())
+            {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long gcCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private static long gcMillis()
+    {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            millis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    /**
+     * Writes a program of the given token mix that is at least size bytes long
+     *
+     * @param file file to write
+     * @param mix  one of the names in MIXES
+     * @param size number of bytes to write, rounded up to a whole statement
+     */
+    public static void writeProgram(File file, String mix, long size) throws IOException
+    {
+        if (mix.equals("generated"))
+        {
+            new ProgramGenerator(size).write(file, size);
+            return;
+        }
+        Random random = new Random(size * 31 + mix.hashCode());
+        StringBuilder statement = new StringBuilder();
+        BufferedWriter out = new BufferedWriter(new FileWriter(file));
+        long written = 0;
+        for (int i = 0; written < size; i++)
+        {
+            statement.setLength(0);
+            switch (mix)
+            {
+                case "identifiers": identifierStatement(statement, random); break;
+                case "numbers":     numberStatement(statement, random); break;
+                case "strings":     stringStatement(statement, random); break;
+                case "nested":      nestedStatement(statement, random); break;
+                case "logic":       logicStatement(statement, random, 3); break;
+                default: throw new IllegalArgumentException("Unknown token mix " + mix);
+            }
+            statement.append('\n');
+            out.write(statement.toString());
+            written += statement.length();
+        }
+        out.close();
+    }
+
+    private static String identifier(Random random)
+    {
+        return "variable_" + (char) ('a' + random.nextInt(26)) + random.nextInt(1000);
+    }
+
+    private static String number(Random random)
+    {
+        switch (random.nextInt(5))
+        {
+            case 0:  return random.nextInt(1000) + "." + random.nextInt(100000) + "e" + random.nextInt(300);
+            case 1:  return random.nextInt(10) + "E+" + random.nextInt(20);
+            case 2:  return "." + random.nextInt(1000000);
+            case 3:  return "000" + random.nextInt(1000) + "." + random.nextInt(10);
+            default: return random.nextInt(100000) + "." + random.nextInt(1000) + "E-" + random.nextInt(10);
+        }
+    }
+
+    // a := b + c - d * e / f;
+    private static void identifierStatement(StringBuilder sb, Random random)
+    {
+        sb.append(identifier(random)).append(" := ").append(identifier(random));
+        for (int i = 0; i < 4; i++)
+        {
+            sb.append(OPERATORS[i]).append(identifier(random));
+        }
+        sb.append(';');
+    }
+
+    // x := .76 / 1.5e10 * 7E+8 - 00012.5 + 9E+5;
+    private static void numberStatement(StringBuilder sb, Random random)
+    {
+        sb.append("x := ").append(number(random));
+        for (int i = 0; i < 4; i++)
+        {
+            sb.append(OPERATORS[3 - i]).append(number(random));
+        }
+        sb.append(';');
+    }
+
+    // PRINT("...", x, "...");
+    private static void stringStatement(StringBuilder sb, Random random)
+    {
+        sb.append("PRINT(\"result number ").append(random.nextInt(100000)).append(" of the computation\", x, \"");
+        for (int i = 0; i < 3; i++)
+        {
+            sb.append("word").append(random.nextInt(1000)).append(' ');
+        }
+        sb.append("\");");
+    }
+
+    // x := ((((a + 1) * (b - 2)) ** ...));
+    private static void nestedStatement(StringBuilder sb, Random random)
+    {
+        int depth = 20 + random.nextInt(20);
+        sb.append("x := ");
+        for (int i = 0; i < depth; i++)
+        {
+            sb.append(i % 3 == 0 ? "-(" : "(");
+        }
+        sb.append(identifier(random));
+        for (int i = 0; i < depth; i++)
+        {
+            sb.append(OPERATORS[i % 5]).append(i % 2 == 0 ? "1" : "SQRT(y)").append(')');
+        }
+        sb.append(';');
+    }
+
+    // IF a AND b: ... ELSE ... ENDIF; with a single connective per condition, as the grammar allows
+    private static void logicStatement(StringBuilder sb, Random random, int depth)
+    {
+        sb.append("IF ").append(identifier(random)).append(random.nextBoolean() ? " AND " : " OR ")
+          .append(identifier(random)).append(" - 1:\n");
+        if (depth > 0)
+        {
+            logicStatement(sb, random, depth - 1);
+            sb.append('\n');
+        }
+        sb.append("x := x + 1;\nELSE\n");
+        if (depth > 0)
+        {
+            logicStatement(sb, random, depth - 1);
+            sb.append('\n');
+        }
+        sb.append("x := x - 1;\nENDIF;");
+    }
+
+    /**
+     * Driver method for the benchmark
+     *
+     * @param args options: -size list of input sizes such as 64k,1m,16m (default 64k,1m,8m),
+     *             -mix list of token mixes or all (default all), -bench list of scanner,
+     *             parser and newparser (default all three), -warmup n (default 5) and
+     *             -iterations n (default 10)
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String[] sizes = {"64k", "1m", "8m"};
+        String[] mixes = MIXES;
+        String[] benchmarks = BENCHMARKS;
+        int warmup = 5;
+        int iterations = 10;
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            switch (args[i])
+            {
+                case "-size":       sizes = args[i + 1].split(","); break;
+                case "-mix":        mixes = args[i + 1].equals("all") ? MIXES : args[i + 1].split(","); break;
+                case "-bench":      benchmarks = args[i + 1].split(","); break;
+                case "-warmup":     warmup = Integer.parseInt(args[i + 1]); break;
+                case "-iterations": iterations = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        ThroughputBenchmark benchmark = new ThroughputBenchmark(warmup, Math.max(iterations, 1));
+        for (String mix : mixes)
+        {
+            for (String size : sizes)
+            {
+                File file = File.createTempFile("simpcalc-" + mix, ".txt");
+                file.deleteOnExit();
+                writeProgram(file, mix, ProgramGenerator.parseSize(size));
+                long tokens = countTokens(file);
+                for (String name : benchmarks)
+                {
+                    benchmark.run(name, mix, file, tokens);
+                }
+                file.delete();
+            }
+        }
+    }
+}
@@ -8,8 +8,8 @@
 
 public class Token
 {
-    private int id;
-    private String lexeme;
+    private final int id;
+    private final String lexeme;
 
     /**
      * Constructor for Token objects.  Requires an id and a lexeme
@@ -23,6 +23,19 @@ public class Token
         this.lexeme = lexeme;
     }
 
+    /**
+     * Returns the shared Token object for a token whose lexeme never changes
+     * (keywords, operators, punctuation and end of file).  Tokens are immutable,
+     * so one instance per id can be handed out for every occurrence.
+     *
+     * @param id    integer value from one of the Token constants defined at the end of this class
+     * @return shared token for id, or null if tokens with this id carry their own lexeme
+     */
+    public static Token fixed(int id)
+    {
+        return fixedTokens[id];
+    }
+
     /**
      * Accessor method for token id
      * @return token id
@@ -41,6 +54,36 @@ public class Token
         return lexeme;
     }
 
+    /**
+     * Accessor method for token lexeme as a CharSequence, which a SliceToken
+     * provides without making a String
+     * @return token lexeme
+     */
+    public CharSequence getLexemeChars()
+    {
+        return getLexeme();
+    }
+
+    /**
+     * Accessor method for the symbol of an identifier interned in a SymbolTable
+     * @return symbol of the identifier, or -1 if the token was not interned
+     */
+    public int getSymbol()
+    {
+        return -1;
+    }
+
+    /**
+     * Accessor method for the value of a Number token.  A NumberToken
+     * returns the value decoded by the scanner; other tokens decode their lexeme.
+     * @return value of the number
+     * @throws NumberFormatException if the lexeme is not a number
+     */
+    public double getValue()
+    {
+        return Double.parseDouble(getLexeme());
+    }
+
     // constants representing valid token ids
     public static final int Error = 0;
     public static final int Identifier = 1;
@@ -85,4 +128,29 @@ public class Token
        "Sqrt       ","And        ","Or         ","Not        "
     };
 
+    // lexemes of tokens that are always spelled the same way (null for the others)
+    private static final String[] fixedLexemes =
+    {
+       null,
+       null,       null,       null,       ":=",       ";",
+       ":",        ",",        "(",        ")",        "+",
+       "-",        "*",        "/",        "**",       "<",
+       "=",        ">",        "<=",       "!=",       ">=",
+       "",         "PRINT",    "IF",       "ELSE",     "ENDIF",
+       "SQRT",     "AND",      "OR",       "NOT"
+    };
+
+    // preallocated tokens returned by fixed(), indexed by token id
+    private static final Token[] fixedTokens = new Token[fixedLexemes.length];
+    static
+    {
+        for (int i = 0; i < fixedLexemes.length; i++)
+        {
+            if (fixedLexemes[i] != null)
+            {
+                fixedTokens[i] = new Token(i, fixedLexemes[i]);
+            }
+        }
+    }
+
 }
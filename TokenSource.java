@@ -0,0 +1,26 @@
+/**
+ * TokenSource is the contract between a scanner and the parser: tokens are
+ * handed out one at a time by getToken(), and getLineNumber() reports the
+ * line the scanner is on, for error messages.  ScannerModule and the
+ * table-driven DfaScannerModule both implement it, so either can drive
+ * a NewParserModule.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public interface TokenSource
+{
+    /**
+     * Scans the next token.  Returns an EndOfFile token, repeatedly, once the
+     * input is exhausted.
+     *
+     * @return next token
+     */
+    Token getToken();
+
+    /**
+     * Accessor method for the current line number
+     * @return line number of the most recently scanned token
+     */
+    int getLineNumber();
+}
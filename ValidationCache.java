@@ -0,0 +1,519 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ValidationCache keeps the results of validating SimpCalc files in a
+ * directory, so a file whose content has not changed since it was last
+ * validated needs neither scanning nor parsing.  Entries are named after
+ * the SHA-256 hash of the content they were made from, so renamed or
+ * copied files hit the same entry and an edited file never hits a stale one.
+ *
+ * An entry starts with the verdict and the diagnostics, which is all
+ * lookup() reads, usually a few dozen bytes.  The packed token stream
+ * follows and is only read by Entry.readTokens().  Each token is one byte
+ * holding its id and, if small, its line's distance from the previous
+ * token's line; identifiers, numbers and strings add their lexeme length
+ * and characters as variable-length integers, so ASCII text takes a byte
+ * per character and the stream is about the size of the source.  Entries
+ * are written to a temporary file and moved into place, so processes
+ * sharing a directory never see half of one.
+ *
+ * The directory is kept under a size limit by deleting the least recently
+ * used entries: lookup() touches the modification time of the entries it
+ * hits, and store() deletes the oldest ones once the total is over the limit,
+ * down to LOW_WATER of it so the next full pass is many stores away.  The
+ * total is counted once when the cache is opened and then kept up to date
+ * by store(); entries another process adds are counted at the next pass.
+ *
+ * An entry that is damaged, e.g. truncated or edited by hand, is a miss:
+ * every count and length read from it is checked against the bytes left.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class ValidationCache
+{
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private static final int MAGIC = 0x53434331;   // "SCC1", changed whenever the format or the parser's verdicts change
+    private static final String SUFFIX = ".scc";
+    private static final int HEADER_BLOCK = 512;       // bytes lookup() reads first
+    private static final double LOW_WATER = 0.9;       // fraction of maxBytes evict() deletes down to
+
+    // a token's byte: id in the low bits, line delta above them, LINE_ESCAPE if a varint delta follows
+    private static final int ID_MASK = 0x1F;
+    private static final int LINE_SHIFT = 5;
+    private static final int LINE_ESCAPE = 7;
+
+    private File directory;
+    private long maxBytes;
+    private AtomicLong totalBytes = new AtomicLong();   // size of the entries, as far as this process knows
+
+    /**
+     * Constructor for ValidationCache objects with the default size limit
+     *
+     * @param directory directory holding the entries, created if missing
+     * @throws IOException if the directory cannot be created
+     */
+    public ValidationCache(File directory) throws IOException
+    {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructor for ValidationCache objects
+     *
+     * @param directory directory holding the entries, created if missing
+     * @param maxBytes  total size the entries are kept under
+     * @throws IOException if the directory cannot be created
+     */
+    public ValidationCache(File directory, long maxBytes) throws IOException
+    {
+        Files.createDirectories(directory.toPath());
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        for (File entry : entries == null ? new File[0] : entries)
+        {
+            totalBytes.addAndGet(entry.length());
+        }
+    }
+
+    /**
+     * A cached validation result
+     */
+    public static class Entry
+    {
+        private final File file;
+        private final List<Diagnostic> diagnostics;
+        private final int tokenCount;
+
+        Entry(File file, List<Diagnostic> diagnostics, int tokenCount)
+        {
+            this.file = file;
+            this.diagnostics = diagnostics;
+            this.tokenCount = tokenCount;
+        }
+
+        /**
+         * Checks if the cached file is a valid SimpCalc program
+         * @return true if the parse found no errors
+         */
+        public boolean isValid()
+        {
+            return diagnostics.isEmpty();
+        }
+
+        /**
+         * Accessor method for the parse errors
+         * @return parse errors in the order the parser found them
+         */
+        public List<Diagnostic> getDiagnostics()
+        {
+            return diagnostics;
+        }
+
+        /**
+         * Accessor method for the number of tokens
+         * @return tokens in the cached stream, including EndOfFile
+         */
+        public int getTokenCount()
+        {
+            return tokenCount;
+        }
+
+        /**
+         * Reads the cached token stream
+         * @return tokens of the file, ending with an EndOfFile token
+         * @throws IOException if the entry cannot be read, e.g. it was evicted meanwhile
+         */
+        public PackedTokenBuffer readTokens() throws IOException
+        {
+            byte[] data = Files.readAllBytes(file.toPath());
+            Decoder in = new Decoder(data, data.length);
+            readHeader(in, file);
+            PackedTokenBuffer tokens = new PackedTokenBuffer(tokenCount);
+            char[] lexeme = new char[64];
+            int line = 0;
+            for (int i = 0; i < tokenCount; i++)
+            {
+                int b = in.readByte();
+                int id = b & ID_MASK;
+                if (id >= Token.tokenNames.length)
+                {
+                    throw new IOException("Malformed cache entry");
+                }
+                int delta = b >>> LINE_SHIFT;
+                line += delta == LINE_ESCAPE ? in.readSignedVarint() : delta;
+                int length = Token.fixed(id) == null ? in.readLength() : 0;
+                if (length == 0)
+                {
+                    tokens.add(id, line);
+                    continue;
+                }
+                if (length > lexeme.length)
+                {
+                    lexeme = new char[Math.max(lexeme.length * 2, length)];
+                }
+                for (int c = 0; c < length; c++)
+                {
+                    lexeme[c] = (char) in.readVarint();
+                }
+                tokens.add(id, lexeme, 0, length, line);
+            }
+            return tokens;
+        }
+    }
+
+    /**
+     * Computes the key of a file's content
+     *
+     * @param file file to hash
+     * @return SHA-256 hash of the file's bytes, in hex
+     * @throws IOException if the file cannot be read
+     */
+    public static String key(File file) throws IOException
+    {
+        MessageDigest digest = sha256();
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            while (channel.read(buffer) >= 0)
+            {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally
+        {
+            channel.close();
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Computes the key of content already read from a file
+     *
+     * @param content bytes of the file
+     * @return SHA-256 hash of the bytes, in hex, the same as key() of the file
+     */
+    public static String key(byte[] content)
+    {
+        return HexFormat.of().formatHex(sha256().digest(content));
+    }
+
+    private static MessageDigest sha256()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Looks up the result cached for a key and marks it as recently used.
+     * Entries that are missing, unreadable, damaged or from another format
+     * version are misses.
+     *
+     * @param key key of the file's content, from key()
+     * @return cached result, or null on a miss
+     */
+    public Entry lookup(String key)
+    {
+        File file = entryFile(key);
+        try
+        {
+            Entry entry;
+            long length = 0;
+            FileInputStream in = new FileInputStream(file);
+            try
+            {
+                // the header nearly always fits in the first block; read the rest only if it does not
+                length = in.getChannel().size();
+                entry = readHeader(new Decoder(in.readNBytes(HEADER_BLOCK), length), file);
+            } catch (EOFException e)
+            {
+                entry = null;
+            } finally
+            {
+                in.close();
+            }
+            if (entry == null && length > HEADER_BLOCK)
+            {
+                byte[] data = Files.readAllBytes(file.toPath());
+                entry = readHeader(new Decoder(data, data.length), file);
+            }
+            if (entry != null)
+            {
+                file.setLastModified(System.currentTimeMillis());
+            }
+            return entry;
+        } catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result of validating a file, then evicts the least recently
+     * used entries if that takes the directory over its size limit
+     *
+     * @param key         key of the file's content, from key()
+     * @param diagnostics parse errors found, empty if the file is valid
+     * @param tokens      tokens of the file, ending with an EndOfFile token
+     * @throws IOException if the entry cannot be written
+     */
+    public void store(String key, List<Diagnostic> diagnostics, PackedTokenBuffer tokens) throws IOException
+    {
+        Encoder out = new Encoder(tokens.size() + tokens.textLength() + 64);
+        write(out, diagnostics, tokens);
+        File entry = entryFile(key);
+        long replaced = entry.length();   // 0 if there is no entry yet
+        File temporary = File.createTempFile(key, ".tmp", directory);
+        try
+        {
+            Files.write(temporary.toPath(), Arrays.copyOf(out.data, out.size));
+            Files.move(temporary.toPath(), entry.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally
+        {
+            temporary.delete();
+        }
+        if (totalBytes.addAndGet(out.size - replaced) > maxBytes)
+        {
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries if the directory is over its
+     * size limit, down to LOW_WATER of the limit.  Lists and sorts every
+     * entry, so store() only calls it once the total it keeps goes over.
+     */
+    public synchronized void evict()
+    {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (entries == null)
+        {
+            return;
+        }
+        long total = 0;
+        long[] lengths = new long[entries.length];
+        long[] lastUsed = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < entries.length; i++)
+        {
+            lengths[i] = entries[i].length();
+            lastUsed[i] = entries[i].lastModified();
+            order[i] = i;
+            total += lengths[i];
+        }
+        if (total > maxBytes)
+        {
+            Arrays.sort(order, Comparator.comparingLong(i -> lastUsed[i]));
+            long target = (long) (maxBytes * LOW_WATER);
+            for (int i = 0; i < order.length && total > target; i++)
+            {
+                if (entries[order[i]].delete())
+                {
+                    total -= lengths[order[i]];
+                }
+            }
+        }
+        totalBytes.set(total);
+    }
+
+    private File entryFile(String key)
+    {
+        return new File(directory, key + SUFFIX);
+    }
+
+    private static void write(Encoder out, List<Diagnostic> diagnostics, PackedTokenBuffer tokens)
+    {
+        out.writeVarint(MAGIC);
+        out.writeVarint(diagnostics.size());
+        for (Diagnostic diagnostic : diagnostics)
+        {
+            out.writeVarint(diagnostic.getLine());
+            out.writeString(diagnostic.getMessage());
+        }
+        out.writeVarint(tokens.size());
+        char[] text = tokens.text();
+        int line = 0;
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            int id = tokens.id(i);
+            int delta = tokens.line(i) - line;
+            line = tokens.line(i);
+            if (delta >= 0 && delta < LINE_ESCAPE)
+            {
+                out.writeByte(id | delta << LINE_SHIFT);
+            }
+            else
+            {
+                out.writeByte(id | LINE_ESCAPE << LINE_SHIFT);
+                out.writeSignedVarint(delta);
+            }
+            if (Token.fixed(id) == null)
+            {
+                int start = tokens.start(i);
+                int length = tokens.length(i);
+                out.writeVarint(length);
+                for (int c = start; c < start + length; c++)
+                {
+                    out.writeVarint(text[c]);
+                }
+            }
+        }
+    }
+
+    // reads everything before the token stream; null if the entry is from another format version
+    private static Entry readHeader(Decoder in, File file) throws IOException
+    {
+        if (in.readVarint() != MAGIC)
+        {
+            return null;
+        }
+        int count = in.readLength();
+        List<Diagnostic> diagnostics = new ArrayList<Diagnostic>(count);
+        for (int i = 0; i < count; i++)
+        {
+            int line = in.readVarint();
+            diagnostics.add(new Diagnostic(line, in.readString()));
+        }
+        return new Entry(file, diagnostics, in.readLength());
+    }
+
+    // writes the entry format into a growing byte array.  Varints hold 7 bits
+    // per byte, low bits first, so ASCII characters and small counts take one byte
+    private static class Encoder
+    {
+        byte[] data;
+        int size;
+
+        Encoder(int capacity)
+        {
+            data = new byte[capacity];
+        }
+
+        void writeByte(int b)
+        {
+            if (size == data.length)
+            {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = (byte) b;
+        }
+
+        void writeVarint(int value)
+        {
+            while ((value & ~0x7F) != 0)
+            {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        // zigzag encoded, so a small negative value stays short too
+        void writeSignedVarint(int value)
+        {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        void writeString(String s)
+        {
+            writeVarint(s.length());
+            for (int i = 0; i < s.length(); i++)
+            {
+                writeVarint(s.charAt(i));
+            }
+        }
+    }
+
+    // reads what Encoder wrote; running past the end of data throws EOFException,
+    // and a count or length that more bytes than the entry has left could not hold
+    // throws IOException
+    private static class Decoder
+    {
+        private final byte[] data;
+        private final long length;   // bytes in the whole entry, of which data may be the first block
+        private int position;
+
+        Decoder(byte[] data, long length)
+        {
+            this.data = data;
+            this.length = length;
+        }
+
+        int readByte() throws EOFException
+        {
+            if (position == data.length)
+            {
+                throw new EOFException();
+            }
+            return data[position++] & 0xFF;
+        }
+
+        int readVarint() throws IOException
+        {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7)
+            {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed cache entry");
+        }
+
+        int readSignedVarint() throws IOException
+        {
+            int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        // a count of items that take at least one byte each
+        int readLength() throws IOException
+        {
+            int value = readVarint();
+            if (value < 0 || value > length - position)
+            {
+                throw new IOException("Malformed cache entry");
+            }
+            return value;
+        }
+
+        String readString() throws IOException
+        {
+            char[] chars = new char[readLength()];
+            for (int i = 0; i < chars.length; i++)
+            {
+                chars[i] = (char) readVarint();
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ValidationMetrics holds process-wide counters of the scanning and parsing
+ * done by ScannerModule and NewParserModule, for monitoring code to poll.
+ * Scanners count tokens in a plain array of their own and add their totals
+ * here once, when they reach the end of their input; parsers add theirs
+ * once per parse.  The lines IncrementalDocument scans again after edits
+ * are counted apart, as rescans, since they are not whole files.  The
+ * counters only grow until reset().
+ *
+ * The same totals are also recorded per file as the JDK Flight Recorder
+ * events ScanEvent and ParseEvent when a recording enables them.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class ValidationMetrics
+{
+    private static final LongAdder filesScanned = new LongAdder();
+    private static final LongAdder scanNanos = new LongAdder();
+    private static final LongAdder lines = new LongAdder();
+    private static final LongAdder commentLines = new LongAdder();
+    private static final AtomicLongArray tokens = new AtomicLongArray(Token.tokenNames.length);
+    private static final LongAdder filesParsed = new LongAdder();
+    private static final LongAdder invalidFiles = new LongAdder();
+    private static final LongAdder parseNanos = new LongAdder();
+    private static final LongAdder parseErrors = new LongAdder();
+    private static final LongAdder rescans = new LongAdder();
+    private static final LongAdder rescanNanos = new LongAdder();
+    private static final LongAdder rescannedLines = new LongAdder();
+
+    private ValidationMetrics()
+    {
+    }
+
+    /**
+     * Adds the totals of one scanned input
+     *
+     * @param nanos          time from the first token to the end of the input
+     * @param lineCount      number of lines read
+     * @param commentCount   number of // comments skipped
+     * @param tokenCounts    number of tokens scanned, indexed by token id
+     */
+    static void recordScan(long nanos, int lineCount, int commentCount, int[] tokenCounts)
+    {
+        filesScanned.increment();
+        scanNanos.add(nanos);
+        lines.add(lineCount);
+        commentLines.add(commentCount);
+        for (int id = 0; id < tokenCounts.length; id++)
+        {
+            if (tokenCounts[id] != 0)
+            {
+                tokens.addAndGet(id, tokenCounts[id]);
+            }
+        }
+    }
+
+    /**
+     * Adds the totals of one parse
+     *
+     * @param nanos  time taken by the parse, including scanning done during it
+     * @param errors number of parse errors found
+     */
+    static void recordParse(long nanos, int errors)
+    {
+        filesParsed.increment();
+        parseNanos.add(nanos);
+        if (errors > 0)
+        {
+            invalidFiles.increment();
+            parseErrors.add(errors);
+        }
+    }
+
+    /**
+     * Adds the totals of one incremental rescan
+     *
+     * @param nanos     time taken to scan the lines
+     * @param lineCount number of lines scanned
+     */
+    static void recordRescan(long nanos, int lineCount)
+    {
+        rescans.increment();
+        rescanNanos.add(nanos);
+        rescannedLines.add(lineCount);
+    }
+
+    /**
+     * Accessor method for the number of inputs scanned to the end
+     * @return inputs scanned
+     */
+    public static long getFilesScanned()
+    {
+        return filesScanned.sum();
+    }
+
+    /**
+     * Accessor method for the time spent scanning
+     * @return total nanoseconds from the first token to the end of each input
+     */
+    public static long getScanNanos()
+    {
+        return scanNanos.sum();
+    }
+
+    /**
+     * Accessor method for the number of lines scanned
+     * @return lines read by the scanners
+     */
+    public static long getLines()
+    {
+        return lines.sum();
+    }
+
+    /**
+     * Accessor method for the number of comments skipped
+     * @return // comments skipped by the scanners
+     */
+    public static long getCommentLines()
+    {
+        return commentLines.sum();
+    }
+
+    /**
+     * Accessor method for the number of tokens of one kind
+     * @param id token id, e.g. Token.Identifier or Token.Error
+     * @return tokens with that id scanned
+     */
+    public static long getTokens(int id)
+    {
+        return tokens.get(id);
+    }
+
+    /**
+     * Accessor method for the number of tokens of all kinds
+     * @return tokens scanned, including EndOfFile tokens
+     */
+    public static long getTokens()
+    {
+        long total = 0;
+        for (int id = 0; id < tokens.length(); id++)
+        {
+            total += tokens.get(id);
+        }
+        return total;
+    }
+
+    /**
+     * Accessor method for the number of parses
+     * @return parses completed
+     */
+    public static long getFilesParsed()
+    {
+        return filesParsed.sum();
+    }
+
+    /**
+     * Accessor method for the number of parses that found errors
+     * @return invalid programs parsed
+     */
+    public static long getInvalidFiles()
+    {
+        return invalidFiles.sum();
+    }
+
+    /**
+     * Accessor method for the time spent parsing
+     * @return total nanoseconds taken by the parses
+     */
+    public static long getParseNanos()
+    {
+        return parseNanos.sum();
+    }
+
+    /**
+     * Accessor method for the number of parse errors
+     * @return parse errors found by all parses
+     */
+    public static long getParseErrors()
+    {
+        return parseErrors.sum();
+    }
+
+    /**
+     * Accessor method for the number of incremental rescans
+     * @return edits whose lines IncrementalDocument scanned again
+     */
+    public static long getRescans()
+    {
+        return rescans.sum();
+    }
+
+    /**
+     * Accessor method for the time spent on incremental rescans
+     * @return total nanoseconds taken by the rescans
+     */
+    public static long getRescanNanos()
+    {
+        return rescanNanos.sum();
+    }
+
+    /**
+     * Accessor method for the number of lines rescanned
+     * @return lines scanned again by IncrementalDocument
+     */
+    public static long getRescannedLines()
+    {
+        return rescannedLines.sum();
+    }
+
+    /**
+     * Sets all counters to zero
+     */
+    public static void reset()
+    {
+        filesScanned.reset();
+        scanNanos.reset();
+        lines.reset();
+        commentLines.reset();
+        for (int id = 0; id < tokens.length(); id++)
+        {
+            tokens.set(id, 0);
+        }
+        filesParsed.reset();
+        invalidFiles.reset();
+        parseNanos.reset();
+        parseErrors.reset();
+        rescans.reset();
+        rescanNanos.reset();
+        rescannedLines.reset();
+    }
+
+    /**
+     * Formats the counters, one per line, with the token counts by id
+     * @return current values of the counters
+     */
+    public static String report()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("files scanned  ").append(getFilesScanned()).append('\n');
+        sb.append("scan ms        ").append(getScanNanos() / 1000000).append('\n');
+        sb.append("lines          ").append(getLines()).append('\n');
+        sb.append("comment lines  ").append(getCommentLines()).append('\n');
+        sb.append("tokens         ").append(getTokens()).append('\n');
+        for (int id = 0; id < tokens.length(); id++)
+        {
+            if (tokens.get(id) != 0)
+            {
+                sb.append("  ").append(Token.tokenNames[id]).append("  ").append(tokens.get(id)).append('\n');
+            }
+        }
+        sb.append("files parsed   ").append(getFilesParsed()).append('\n');
+        sb.append("invalid files  ").append(getInvalidFiles()).append('\n');
+        sb.append("parse ms       ").append(getParseNanos() / 1000000).append('\n');
+        sb.append("parse errors   ").append(getParseErrors()).append('\n');
+        sb.append("rescans        ").append(getRescans()).append('\n');
+        sb.append("rescan ms      ").append(getRescanNanos() / 1000000).append('\n');
+        sb.append("rescan lines   ").append(getRescannedLines()).append('\n');
+        return sb.toString();
+    }
+}
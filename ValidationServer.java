@@ -0,0 +1,354 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ValidationServer keeps a JVM with warmed-up scanner and parser code
+ * running, so tools that check one file at a time do not pay for starting
+ * the JVM and compiling the code again on every file.  It reads requests
+ * from standard input, or from the connections to a Unix domain socket,
+ * one per line, and answers each with one line of JSON:
+ *
+ *   validate file   {"file":"a.txt","valid":false,"errors":[{"line":3,"message":"Semicolon   expected."}]}
+ *   tokens file     {"file":"a.txt","tokens":[{"token":"Identifier","lexeme":"x","line":1},...]}
+ *   parse file      {"file":"a.txt","valid":true,"errors":[],"tree":"(PROGRAM ...)"}
+ *   metrics         {"filesScanned":12,"tokens":3400,...}, the ValidationMetrics counters
+ *   quit            closes the connection, or ends the server when reading standard input
+ *
+ * A request that cannot be served is answered with {"error":"..."}.  The
+ * tokens are those ScannerTester prints, without the EndOfFile token; the
+ * errors are those NewParserTester reports.  With a ValidationCache,
+ * validate answers files seen before without scanning or parsing them.
+ *
+ * Every request is served with its own scanner and parser, so the
+ * connections to a socket are served concurrently, one thread each.
+ *
+ * @author Jingran Li
+ * @version 1.0
+ */
+public class ValidationServer
+{
+    private ValidationCache cache;
+
+    /**
+     * Constructor for ValidationServer objects
+     *
+     * @param cache cache for validate requests, or null to always scan and parse
+     */
+    public ValidationServer(ValidationCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Serves the requests read from in until it ends or a quit request
+     *
+     * @param in  request lines
+     * @param out where the answers are written, one line each
+     * @return true if the requests ended with quit
+     * @throws IOException if reading or writing fails
+     */
+    public boolean serve(BufferedReader in, Writer out) throws IOException
+    {
+        String line;
+        while ((line = in.readLine()) != null)
+        {
+            line = line.trim();
+            if (line.length() == 0)
+            {
+                continue;
+            }
+            if (line.equals("quit"))
+            {
+                return true;
+            }
+            out.write(answer(line));
+            out.write('\n');
+            out.flush();
+        }
+        return false;
+    }
+
+    /**
+     * Serves one request
+     *
+     * @param request request line, e.g. "validate sample1.txt"
+     * @return answer as a JSON object
+     */
+    public String answer(String request)
+    {
+        int space = request.indexOf(' ');
+        String command = space < 0 ? request : request.substring(0, space);
+        String fileName = space < 0 ? null : request.substring(space + 1).trim();
+        if (command.equals("metrics"))
+        {
+            return metrics();
+        }
+        if (fileName == null || fileName.length() == 0
+            || !(command.equals("validate") || command.equals("tokens") || command.equals("parse")))
+        {
+            return "{\"error\":" + quote("unknown request: " + request) + "}";
+        }
+        try
+        {
+            switch (command)
+            {
+                case "validate": return validate(new File(fileName));
+                case "tokens":   return tokens(new File(fileName));
+                default:         return parse(new File(fileName));
+            }
+        } catch (IOException | UncheckedIOException e)
+        {
+            return "{\"file\":" + quote(fileName) + ",\"error\":" + quote(e.toString()) + "}";
+        }
+    }
+
+    private String validate(File file) throws IOException
+    {
+        NewParserModule pm = new NewParserModule(file.getPath());
+        pm.setCache(cache);
+        pm.parse(file);
+        return verdict(file, pm.getDiagnostics(), null);
+    }
+
+    private String parse(File file) throws IOException
+    {
+        NewParserModule pm = new NewParserModule(scan(file));
+        pm.setSourceName(file.getPath());
+        SyntaxTree tree = pm.parseTree();
+        return verdict(file, pm.getDiagnostics(), tree == null ? "" : tree.toString());
+    }
+
+    private String tokens(File file) throws IOException
+    {
+        PackedTokenBuffer tokens = scan(file);
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"file\":").append(quote(file.getPath())).append(",\"tokens\":[");
+        for (int i = 0; i < tokens.size() && tokens.id(i) != Token.EndOfFile; i++)
+        {
+            if (i > 0)
+            {
+                sb.append(',');
+            }
+            sb.append("{\"token\":").append(quote(Token.tokenNames[tokens.id(i)].trim()));
+            sb.append(",\"lexeme\":").append(quote(tokens.lexeme(i)));
+            sb.append(",\"line\":").append(tokens.line(i)).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static PackedTokenBuffer scan(File file) throws IOException
+    {
+        PackedTokenBuffer tokens = new PackedTokenBuffer();
+        MappedLineSource input = new MappedLineSource(file);
+        try
+        {
+            ScannerModule sm = new ScannerModule(input);
+            sm.setSourceName(file.getPath());
+            sm.getTokens(tokens);
+        } finally
+        {
+            input.close();
+        }
+        return tokens;
+    }
+
+    // the answer to validate, or to parse when tree is not null
+    private static String verdict(File file, List<Diagnostic> diagnostics, String tree)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"file\":").append(quote(file.getPath()));
+        sb.append(",\"valid\":").append(diagnostics.isEmpty());
+        sb.append(",\"errors\":[");
+        for (int i = 0; i < diagnostics.size(); i++)
+        {
+            if (i > 0)
+            {
+                sb.append(',');
+            }
+            sb.append("{\"line\":").append(diagnostics.get(i).getLine());
+            sb.append(",\"message\":").append(quote(diagnostics.get(i).getMessage())).append('}');
+        }
+        sb.append(']');
+        if (tree != null)
+        {
+            sb.append(",\"tree\":").append(quote(tree));
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String metrics()
+    {
+        return "{\"filesScanned\":" + ValidationMetrics.getFilesScanned()
+             + ",\"scanNanos\":" + ValidationMetrics.getScanNanos()
+             + ",\"lines\":" + ValidationMetrics.getLines()
+             + ",\"commentLines\":" + ValidationMetrics.getCommentLines()
+             + ",\"tokens\":" + ValidationMetrics.getTokens()
+             + ",\"filesParsed\":" + ValidationMetrics.getFilesParsed()
+             + ",\"invalidFiles\":" + ValidationMetrics.getInvalidFiles()
+             + ",\"parseNanos\":" + ValidationMetrics.getParseNanos()
+             + ",\"parseErrors\":" + ValidationMetrics.getParseErrors()
+             + ",\"rescans\":" + ValidationMetrics.getRescans()
+             + ",\"rescannedLines\":" + ValidationMetrics.getRescannedLines() + "}";
+    }
+
+    // s as a JSON string literal
+    private static String quote(String s)
+    {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            char ch = s.charAt(i);
+            switch (ch)
+            {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20)
+                    {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    }
+                    else
+                    {
+                        sb.append(ch);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Runs the scanner and parser over a generated program until the JIT
+     * has compiled their hot paths, so the first requests are served fast
+     *
+     * @param size approximate size of the program in bytes
+     * @param rounds number of times the program is scanned and parsed
+     * @throws IOException if the program cannot be written to a temporary file
+     */
+    public void warmUp(long size, int rounds) throws IOException
+    {
+        File program = File.createTempFile("simpcalc-warmup", ".txt");
+        try
+        {
+            new ProgramGenerator(1).write(program, size);
+            for (int i = 0; i < rounds; i++)
+            {
+                new NewParserModule(scan(program)).parse();
+            }
+        } finally
+        {
+            program.delete();
+        }
+        ValidationMetrics.reset();
+    }
+
+    /**
+     * Accepts connections to a Unix domain socket and serves each on its own
+     * thread until the process is stopped.  A file left at the path by an
+     * earlier server is replaced.
+     *
+     * @param path path of the socket
+     * @throws IOException if the socket cannot be bound
+     */
+    public void listen(Path path) throws IOException
+    {
+        Files.deleteIfExists(path);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            try
+            {
+                Files.deleteIfExists(path);
+            } catch (IOException e)
+            {
+                // nothing to do while the JVM exits
+            }
+        }));
+        ExecutorService executor = Executors.newCachedThreadPool();
+        while (true)
+        {
+            final SocketChannel connection = server.accept();
+            executor.execute(() ->
+            {
+                try
+                {
+                    serve(new BufferedReader(Channels.newReader(connection, StandardCharsets.UTF_8)),
+                          Channels.newWriter(connection, StandardCharsets.UTF_8));
+                } catch (IOException e)
+                {
+                    // the client went away; its connection is closed below
+                } finally
+                {
+                    try
+                    {
+                        connection.close();
+                    } catch (IOException e)
+                    {
+                        // already closed
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Driver method that starts a server
+     *
+     * @param args -socket followed by a path to listen on a Unix domain socket instead of
+     *             standard input, -cache followed by a directory to cache the results of
+     *             validate requests there, and -warmup followed by a program size (e.g. 2M,
+     *             default 1M, 0 for none) to scan and parse before the first request
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String socket = null;
+        ValidationCache cache = null;
+        long warmup = 1 << 20;
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            switch (args[i])
+            {
+                case "-socket": socket = args[i + 1]; break;
+                case "-cache":  cache = new ValidationCache(new File(args[i + 1])); break;
+                case "-warmup": warmup = ProgramGenerator.parseSize(args[i + 1]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+        ValidationServer server = new ValidationServer(cache);
+        if (warmup > 0)
+        {
+            server.warmUp(warmup, 10);
+        }
+        if (socket != null)
+        {
+            server.listen(Path.of(socket));
+        }
+        else
+        {
+            server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                         new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        }
+    }
+}